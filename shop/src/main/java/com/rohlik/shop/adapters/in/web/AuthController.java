@@ -3,6 +3,7 @@ package com.rohlik.shop.adapters.in.web;
 import com.rohlik.shop.adapters.out.persistence.JpaUserRepository;
 import com.rohlik.shop.application.domain.UserEntity;
 import com.rohlik.shop.service.JwtService;
+import com.rohlik.shop.service.PasswordHashingExecutor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -19,6 +20,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -29,39 +31,45 @@ public class AuthController {
     private final JwtService jwtService;
     private final PasswordEncoder passwordEncoder;
     private final JpaUserRepository userRepository;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@RequestBody AuthRequest request) {
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        request.username(),
-                        request.password()
-                )
-        );
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@RequestBody AuthRequest request) {
+        // BCrypt runs on the bounded hashing pool, not on the servlet thread
+        return passwordHashingExecutor.submit(() -> {
+            authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            request.username(),
+                            request.password()
+                    )
+            );
 
-        final UserDetails userDetails = userDetailsService.loadUserByUsername(request.username());
-        final String jwt = jwtService.generateToken(userDetails);
+            final UserDetails userDetails = userDetailsService.loadUserByUsername(request.username());
+            final String jwt = jwtService.generateToken(userDetails);
 
-        return ResponseEntity.ok(new AuthResponse(jwt));
+            return ResponseEntity.ok(new AuthResponse(jwt));
+        });
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody @Valid RegisterRequest request) {
-        if (userRepository.existsByUsername(request.username())) {
-            return ResponseEntity.badRequest().body(Map.of("message", "Uživatel s tímto jménem již existuje"));
-        }
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody @Valid RegisterRequest request) {
+        return passwordHashingExecutor.submit(() -> {
+            if (userRepository.existsByUsername(request.username())) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Uživatel s tímto jménem již existuje"));
+            }
 
-        UserEntity userEntity = new UserEntity();
-        userEntity.setUsername(request.username());
-        userEntity.setPassword(passwordEncoder.encode(request.password()));
-        userEntity.setRole("USER");
+            UserEntity userEntity = new UserEntity();
+            userEntity.setUsername(request.username());
+            userEntity.setPassword(passwordEncoder.encode(request.password()));
+            userEntity.setRole("USER");
 
-        userRepository.save(userEntity);
+            userRepository.save(userEntity);
 
-        final UserDetails userDetails = userDetailsService.loadUserByUsername(request.username());
-        final String jwt = jwtService.generateToken(userDetails);
+            final UserDetails userDetails = userDetailsService.loadUserByUsername(request.username());
+            final String jwt = jwtService.generateToken(userDetails);
 
-        return ResponseEntity.ok(new AuthResponse(jwt));
+            return ResponseEntity.ok(new AuthResponse(jwt));
+        });
     }
 }
 
@@ -0,0 +1,47 @@
+package com.rohlik.shop.adapters.in.web;
+
+import com.rohlik.shop.application.service.LiveUpdateBroadcaster;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/api/orders")
+@Tag(name = "Orders", description = "Order management APIs")
+public class LiveUpdateController {
+    private final LiveUpdateBroadcaster broadcaster;
+    private final long timeoutMillis;
+
+    public LiveUpdateController(LiveUpdateBroadcaster broadcaster,
+                                @Value("${shop.live-updates.timeout:30m}") Duration timeout) {
+        this.broadcaster = broadcaster;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream order status and product stock changes as server-sent events")
+    public SseEmitter streamUpdates() {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        LiveUpdateBroadcaster.Subscription subscription = broadcaster.subscribe(update -> {
+            try {
+                emitter.send(SseEmitter.event().name(update.type()).data(update, MediaType.APPLICATION_JSON));
+            } catch (IOException ex) {
+                emitter.completeWithError(ex);
+                throw new UncheckedIOException(ex);
+            }
+        }, emitter::complete);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(ex -> subscription.close());
+        return emitter;
+    }
+}
@@ -1,22 +1,45 @@
 package com.rohlik.shop.adapters.in.web;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.rohlik.shop.adapters.in.web.dto.OrderBatchResultDTO;
 import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderFilterDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderPageDTO;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.service.IdempotentOrderService;
 import com.rohlik.shop.application.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/orders")
 @RequiredArgsConstructor
 @Tag(name = "Orders", description = "Order management APIs")
 public class OrderController {
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final OrderService orderService;
+    private final IdempotentOrderService idempotentOrderService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @Operation(summary = "Create a new order")
@@ -24,12 +47,89 @@ public class OrderController {
         return ResponseEntity.ok(orderService.createOrder(OrderDTO));
     }
 
+    @PostMapping(headers = IDEMPOTENCY_KEY)
+    @Operation(summary = "Create a new order once per Idempotency-Key, retries get the original order")
+    public ResponseEntity<OrderDTO> createOrderIdempotently(@RequestHeader(IDEMPOTENCY_KEY) String idempotencyKey,
+                                                            @Valid @RequestBody OrderDTO orderDTO) {
+        return ResponseEntity.ok(idempotentOrderService.createOrder(idempotencyKey, orderDTO));
+    }
+
+    @PostMapping("/batch")
+    @Operation(summary = "Create many orders at once, each order succeeds or fails on its own")
+    public ResponseEntity<List<OrderBatchResultDTO>> createOrders(@RequestBody List<OrderDTO> orders) {
+        return ResponseEntity.ok(orderService.createOrders(orders));
+    }
+
     @GetMapping
     @Operation(summary = "Get all orders")
     public ResponseEntity<List<OrderDTO>> getAllOrders() {
         return ResponseEntity.ok(orderService.getAllOrders());
     }
 
+    @GetMapping("/page")
+    @Operation(summary = "Get a page of orders, newest first, continuing after the given cursor")
+    public ResponseEntity<OrderPageDTO> getOrdersPage(
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(orderService.getOrdersPage(new OrderFilterDTO(status, from, to), cursor, limit));
+    }
+
+    @GetMapping(produces = NDJSON)
+    @Operation(summary = "Stream all orders as newline delimited JSON")
+    public ResponseEntity<StreamingResponseBody> streamOrders(
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        OrderFilterDTO filter = new OrderFilterDTO(status, from, to);
+        StreamingResponseBody body = out -> {
+            try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+                orderService.streamOrders(filter, order -> {
+                    try {
+                        writer.write(order);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Export orders with their items in id order as ndjson or csv, resumable after an order id; "
+        + "gzip compressed when the client accepts it")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean csv = switch (format) {
+            case "csv" -> true;
+            case "ndjson" -> false;
+            default -> throw new IllegalArgumentException("Orders can be exported as ndjson or csv, not " + format);
+        };
+        boolean gzip = acceptsGzip(acceptEncoding);
+        OrderFilterDTO filter = new OrderFilterDTO(status, from, to);
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 1 << 16) : out;
+            try (OrderExportWriter writer = csv ? OrderExportWriter.csv(target) : OrderExportWriter.ndjson(objectMapper, target)) {
+                orderService.exportOrders(filter, afterId, writer);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(csv ? CSV : NDJSON))
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get an order by ID")
     public ResponseEntity<OrderDTO> getOrderById(@PathVariable Long id) {
@@ -49,4 +149,34 @@ public class OrderController {
         orderService.completeOrder(id);
         return ResponseEntity.ok().build();
     }
+
+    // gzip;q=0 refuses gzip, a * covers it unless gzip is listed itself
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        double wildcard = 0;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException ex) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                return quality > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        return wildcard > 0;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.rohlik.shop.adapters.in.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderItemDTO;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Writes exported orders to a response body as they arrive, NDJSON with one order per line or
+ * CSV with one item per line.
+ */
+abstract class OrderExportWriter implements Consumer<OrderDTO>, Closeable {
+
+    static OrderExportWriter ndjson(ObjectMapper objectMapper, OutputStream out) throws IOException {
+        return new Ndjson(objectMapper.writer().withRootValueSeparator("\n").writeValues(out));
+    }
+
+    static OrderExportWriter csv(OutputStream out) throws IOException {
+        return new Csv(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16));
+    }
+
+    @Override
+    public void accept(OrderDTO order) {
+        try {
+            write(order);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    abstract void write(OrderDTO order) throws IOException;
+
+    private static final class Ndjson extends OrderExportWriter {
+        private final SequenceWriter writer;
+
+        Ndjson(SequenceWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        void write(OrderDTO order) throws IOException {
+            writer.write(order);
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class Csv extends OrderExportWriter {
+        private final Writer writer;
+
+        Csv(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write("orderId,createdAt,expiresAt,status,itemId,productId,productName,quantity,price\n");
+        }
+
+        @Override
+        void write(OrderDTO order) throws IOException {
+            for (OrderItemDTO item : order.items()) {
+                writer.write(order.id() + "," + order.createdAt() + "," + quote(order.expiresAt()) + "," + order.status() + ","
+                    + item.id() + "," + item.productId() + "," + quote(item.productName()) + ","
+                    + item.quantity() + "," + item.price().toPlainString() + "\n");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+
+        private static String quote(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                return text;
+            }
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.rohlik.shop.adapters.in.web;
 
 import com.rohlik.shop.adapters.in.web.dto.ProductDTO;
+import com.rohlik.shop.adapters.in.web.dto.ProductPageDTO;
 import com.rohlik.shop.application.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -30,6 +33,12 @@ public class ProductController {
         return ResponseEntity.ok(productService.getAllProducts());
     }
 
+    @GetMapping("/page")
+    @Operation(summary = "Get a page of active products, e.g. ?page=0&size=20&sort=name,asc")
+    public ResponseEntity<ProductPageDTO> getProductsPage(@PageableDefault(size = 20, sort = "name") Pageable pageable) {
+        return ResponseEntity.ok(productService.getProductsPage(pageable));
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Get a product by ID")
     public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id) {
@@ -0,0 +1,33 @@
+package com.rohlik.shop.adapters.in.web;
+
+import com.rohlik.shop.adapters.in.web.dto.ProductImportResultDTO;
+import com.rohlik.shop.application.service.ProductImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/products")
+@RequiredArgsConstructor
+@Tag(name = "Products", description = "Product management APIs")
+public class ProductImportController {
+    private final ProductImportService productImportService;
+    private final ProductImportReader productImportReader;
+
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Import products from a CSV or NDJSON body, upserting them by name")
+    public ResponseEntity<ProductImportResultDTO> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                                 InputStream body) {
+        return ResponseEntity.ok(productImportService.importProducts(
+            productImportReader.read(body, MediaType.parseMediaType(contentType))));
+    }
+}
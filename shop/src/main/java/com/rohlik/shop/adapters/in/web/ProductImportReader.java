@@ -0,0 +1,229 @@
+package com.rohlik.shop.adapters.in.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import com.rohlik.shop.adapters.in.web.dto.ProductImportRowDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Turns a CSV or NDJSON request body into product rows one line at a time, nothing is buffered
+ * beyond the current line. CSV needs a header naming the {@code name}, {@code price} and
+ * {@code stockQuantity} columns in any order; quoted values may not span lines.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductImportReader {
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    private static final List<String> COLUMNS = List.of("name", "price", "stockquantity");
+
+    private final ObjectMapper objectMapper;
+
+    public Iterator<ProductImportRowDTO> read(InputStream body, MediaType contentType) {
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, charset), 1 << 16);
+        if (TEXT_CSV.isCompatibleWith(contentType)) {
+            return new CsvRows(reader);
+        }
+        if (MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)) {
+            return new JsonRows(reader);
+        }
+        throw new IllegalArgumentException("Products can be imported from text/csv or application/x-ndjson, not " + contentType);
+    }
+
+    private abstract static class LineRows implements Iterator<ProductImportRowDTO> {
+        private final BufferedReader reader;
+        private long lineNumber;
+        private ProductImportRowDTO next;
+
+        LineRows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Returns the row of a line, {@code null} for a line that holds no row.
+         */
+        abstract ProductImportRowDTO parse(long line, String text);
+
+        @Override
+        public boolean hasNext() {
+            try {
+                String text;
+                while (next == null && (text = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (!text.isBlank()) {
+                        next = parse(lineNumber, lineNumber == 1 ? stripBom(text) : text);
+                    }
+                }
+                return next != null;
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot read import body", ex);
+            }
+        }
+
+        @Override
+        public ProductImportRowDTO next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ProductImportRowDTO row = next;
+            next = null;
+            return row;
+        }
+    }
+
+    private static final class CsvRows extends LineRows {
+        private int[] positions;
+
+        CsvRows(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        ProductImportRowDTO parse(long line, String text) {
+            List<String> values;
+            try {
+                values = splitCsv(text);
+            } catch (IllegalArgumentException ex) {
+                if (positions == null) {
+                    throw ex;
+                }
+                return ProductImportRowDTO.malformed(line, ex.getMessage());
+            }
+            if (positions == null) {
+                positions = header(values);
+                return null;
+            }
+            try {
+                return ProductImportRowDTO.parsed(line,
+                    value(values, positions[0]),
+                    decimal(value(values, positions[1])),
+                    integer(value(values, positions[2])));
+            } catch (NumberFormatException ex) {
+                return ProductImportRowDTO.malformed(line, ex.getMessage());
+            }
+        }
+
+        private static int[] header(List<String> columns) {
+            int[] positions = new int[COLUMNS.size()];
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                positions[i] = columns.stream().map(column -> column.trim().toLowerCase(Locale.ROOT)).toList()
+                    .indexOf(COLUMNS.get(i));
+                if (positions[i] < 0) {
+                    throw new IllegalArgumentException("CSV header must name the columns name, price and stockQuantity");
+                }
+            }
+            return positions;
+        }
+
+        private static String value(List<String> values, int position) {
+            return position < values.size() ? values.get(position) : null;
+        }
+    }
+
+    private final class JsonRows extends LineRows {
+        // 29.90 stays 29.90, a double would drop the scale
+        private final ObjectReader jsonReader = objectMapper.reader()
+            .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+            .without(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES);
+
+        JsonRows(BufferedReader reader) {
+            super(reader);
+        }
+
+        @Override
+        ProductImportRowDTO parse(long line, String text) {
+            try {
+                JsonNode node = jsonReader.readTree(text);
+                if (!node.isObject()) {
+                    return ProductImportRowDTO.malformed(line, "Expected a JSON object");
+                }
+                return ProductImportRowDTO.parsed(line,
+                    node.hasNonNull("name") ? node.get("name").asText() : null,
+                    decimal(node.hasNonNull("price") ? node.get("price").asText() : null),
+                    integer(node.hasNonNull("stockQuantity") ? node.get("stockQuantity").asText() : null));
+            } catch (JsonProcessingException ex) {
+                return ProductImportRowDTO.malformed(line, "Invalid JSON: " + ex.getOriginalMessage());
+            } catch (NumberFormatException ex) {
+                return ProductImportRowDTO.malformed(line, ex.getMessage());
+            }
+        }
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static BigDecimal decimal(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException("Price is not a number: " + value);
+        }
+    }
+
+    private static Integer integer(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException("Stock quantity is not a whole number: " + value);
+        }
+    }
+
+    private static String stripBom(String text) {
+        return text.startsWith("\uFEFF") ? text.substring(1) : text;
+    }
+}
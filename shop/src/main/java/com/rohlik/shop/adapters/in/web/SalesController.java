@@ -0,0 +1,38 @@
+package com.rohlik.shop.adapters.in.web;
+
+import com.rohlik.shop.adapters.in.web.dto.ProductSalesDTO;
+import com.rohlik.shop.application.service.SalesAggregates;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/sales")
+@RequiredArgsConstructor
+@Tag(name = "Sales", description = "Sales aggregates per product")
+public class SalesController {
+    private final SalesAggregates salesAggregates;
+
+    @GetMapping("/products")
+    @Operation(summary = "Get sales of all products that were ever ordered")
+    public ResponseEntity<List<ProductSalesDTO>> getAllProductSales() {
+        return ResponseEntity.ok(salesAggregates.getAllProductSales());
+    }
+
+    @GetMapping("/products/{productId}")
+    @Operation(summary = "Get units sold, revenue and open reservations of a product")
+    public ResponseEntity<ProductSalesDTO> getProductSales(@PathVariable Long productId) {
+        return ResponseEntity.ok(salesAggregates.getProductSales(productId));
+    }
+
+    @PostMapping("/rebuild")
+    @Operation(summary = "Recompute the sales aggregates from the order tables")
+    public ResponseEntity<Void> rebuild() {
+        salesAggregates.rebuild();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.rohlik.shop.adapters.in.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.rohlik.shop.application.domain.OrderStatus;
+
+/**
+ * One change pushed to live subscribers, either the new status of an order or the current
+ * stock level of a product. {@code type} doubles as the server-sent event name.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LiveUpdateDTO(
+    String type,
+    Long id,
+    OrderStatus status,
+    Integer stockQuantity
+) {
+    public static final String ORDER_STATUS = "order-status";
+    public static final String PRODUCT_STOCK = "product-stock";
+
+    public static LiveUpdateDTO orderStatus(Long orderId, OrderStatus status) {
+        return new LiveUpdateDTO(ORDER_STATUS, orderId, status, null);
+    }
+
+    public static LiveUpdateDTO productStock(Long productId, int stockQuantity) {
+        return new LiveUpdateDTO(PRODUCT_STOCK, productId, null, stockQuantity);
+    }
+}
@@ -0,0 +1,19 @@
+package com.rohlik.shop.adapters.in.web.dto;
+
+/**
+ * Outcome of one order of a batch, {@code index} is its position in the request.
+ */
+public record OrderBatchResultDTO(
+    int index,
+    boolean created,
+    OrderDTO order,
+    String error
+) {
+    public static OrderBatchResultDTO created(int index, OrderDTO order) {
+        return new OrderBatchResultDTO(index, true, order, null);
+    }
+
+    public static OrderBatchResultDTO rejected(int index, String error) {
+        return new OrderBatchResultDTO(index, false, null, error);
+    }
+}
@@ -0,0 +1,11 @@
+package com.rohlik.shop.adapters.in.web.dto;
+
+import com.rohlik.shop.application.domain.OrderStatus;
+
+import java.time.LocalDateTime;
+
+public record OrderFilterDTO(
+    OrderStatus status,
+    LocalDateTime from,
+    LocalDateTime to
+) {}
@@ -0,0 +1,8 @@
+package com.rohlik.shop.adapters.in.web.dto;
+
+import java.util.List;
+
+public record OrderPageDTO(
+    List<OrderDTO> items,
+    String nextCursor
+) {}
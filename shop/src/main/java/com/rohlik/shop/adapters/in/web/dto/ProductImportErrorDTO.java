@@ -0,0 +1,6 @@
+package com.rohlik.shop.adapters.in.web.dto;
+
+public record ProductImportErrorDTO(
+    long line,
+    String error
+) {}
@@ -0,0 +1,17 @@
+package com.rohlik.shop.adapters.in.web.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a product import. {@code errors} lists rejected rows up to a limit, {@code rejected}
+ * counts all of them.
+ */
+public record ProductImportResultDTO(
+    long rows,
+    long created,
+    long updated,
+    long rejected,
+    long durationMs,
+    long rowsPerSecond,
+    List<ProductImportErrorDTO> errors
+) {}
@@ -0,0 +1,23 @@
+package com.rohlik.shop.adapters.in.web.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * One product row of an import file, {@code line} is its line number. A row that could not be
+ * parsed carries only the {@code error}.
+ */
+public record ProductImportRowDTO(
+    long line,
+    String name,
+    BigDecimal price,
+    Integer stockQuantity,
+    String error
+) {
+    public static ProductImportRowDTO parsed(long line, String name, BigDecimal price, Integer stockQuantity) {
+        return new ProductImportRowDTO(line, name, price, stockQuantity, null);
+    }
+
+    public static ProductImportRowDTO malformed(long line, String error) {
+        return new ProductImportRowDTO(line, null, null, null, error);
+    }
+}
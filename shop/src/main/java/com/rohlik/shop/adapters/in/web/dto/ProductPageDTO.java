@@ -0,0 +1,11 @@
+package com.rohlik.shop.adapters.in.web.dto;
+
+import java.util.List;
+
+public record ProductPageDTO(
+    List<ProductDTO> items,
+    int page,
+    int size,
+    long totalElements,
+    int totalPages
+) {}
@@ -0,0 +1,15 @@
+package com.rohlik.shop.adapters.in.web.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Sales of one product: units and revenue of completed orders, units and number of orders
+ * still holding a reservation of it.
+ */
+public record ProductSalesDTO(
+    Long productId,
+    long unitsSold,
+    BigDecimal revenue,
+    long reservedUnits,
+    long openReservations
+) {}
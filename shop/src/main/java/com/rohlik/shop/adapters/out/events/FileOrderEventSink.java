@@ -0,0 +1,46 @@
+package com.rohlik.shop.adapters.out.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rohlik.shop.application.domain.OrderEvent;
+import com.rohlik.shop.application.service.OrderEventSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends order events as newline delimited JSON to a local file, a stand-in for a broker.
+ */
+@Component
+@ConditionalOnProperty(name = "shop.outbox.sink", havingValue = "file")
+public class FileOrderEventSink implements OrderEventSink {
+    private final ObjectMapper objectMapper;
+    private final Path path;
+
+    public FileOrderEventSink(ObjectMapper objectMapper,
+                              @Value("${shop.outbox.file.path:order-events.ndjson}") Path path) {
+        this.objectMapper = objectMapper;
+        this.path = path;
+    }
+
+    @Override
+    public void publish(List<OrderEvent> events) {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (OrderEvent event : events) {
+                writer.write(objectMapper.writeValueAsString(event));
+                writer.write('\n');
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot append order events to " + path, ex);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.rohlik.shop.adapters.out.events;
+
+import com.rohlik.shop.application.domain.OrderEvent;
+import com.rohlik.shop.application.service.OrderEventSink;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps published events in memory, for tests and local experiments.
+ */
+@Component
+@ConditionalOnProperty(name = "shop.outbox.sink", havingValue = "memory")
+public class InMemoryOrderEventSink implements OrderEventSink {
+    private final List<OrderEvent> events = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(List<OrderEvent> batch) {
+        events.addAll(batch);
+    }
+
+    public List<OrderEvent> events() {
+        return List.copyOf(events);
+    }
+
+    public void clear() {
+        events.clear();
+    }
+}
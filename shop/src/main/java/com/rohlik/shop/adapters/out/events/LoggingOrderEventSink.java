@@ -0,0 +1,20 @@
+package com.rohlik.shop.adapters.out.events;
+
+import com.rohlik.shop.application.domain.OrderEvent;
+import com.rohlik.shop.application.service.OrderEventSink;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "shop.outbox.sink", havingValue = "log", matchIfMissing = true)
+public class LoggingOrderEventSink implements OrderEventSink {
+
+    @Override
+    public void publish(List<OrderEvent> events) {
+        events.forEach(event -> log.info("Order event {}", event));
+    }
+}
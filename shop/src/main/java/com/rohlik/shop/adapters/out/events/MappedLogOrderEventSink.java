@@ -0,0 +1,190 @@
+package com.rohlik.shop.adapters.out.events;
+
+import com.rohlik.shop.adapters.out.log.MappedAppendLog;
+import com.rohlik.shop.adapters.out.log.PersistentDatasource;
+import com.rohlik.shop.application.domain.OrderEvent;
+import com.rohlik.shop.application.domain.OrderEventType;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.service.OrderEventSink;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Durable journal of order transitions in segmented {@link MappedAppendLog} files, a batch is
+ * acknowledged only after it was forced to disk.
+ * <p>
+ * The relay delivers at least once: when deleting a delivered batch fails, the same oldest
+ * events come again. Startup replays the journal into a window of the last
+ * {@code shop.outbox.batch-size} event ids and redelivered events are skipped, so every event is
+ * journaled once even across a crash. Event ids come from the database, so the journal refuses
+ * to start on an in-memory one whose ids start over after a restart.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "shop.outbox.sink", havingValue = "mmap")
+public class MappedLogOrderEventSink implements OrderEventSink {
+    private static final String PREFIX = "orders-";
+    private static final String SUFFIX = ".log";
+    private static final int RECORD = 2 * Long.BYTES + 2 + Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int window;
+    private final Set<Long> recentEventIds = new LinkedHashSet<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private int segment;
+    private MappedAppendLog current;
+
+    public MappedLogOrderEventSink(@Value("${spring.datasource.url:}") String datasourceUrl,
+                                   @Value("${shop.persistence.log.directory:data}") Path directory,
+                                   @Value("${shop.persistence.log.segment-size:16MB}") DataSize segmentSize,
+                                   @Value("${shop.outbox.batch-size:200}") int window) throws IOException {
+        PersistentDatasource.require(datasourceUrl, "shop.outbox.sink=mmap");
+        this.directory = directory.resolve("orders");
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+        this.window = window;
+        Files.createDirectories(this.directory);
+        this.segment = Math.max(1, segments().reduce(0, Math::max));
+        this.current = new MappedAppendLog(segmentPath(segment), this.segmentSize);
+
+        long start = System.nanoTime();
+        long[] events = {0};
+        replay(event -> {
+            remember(event.eventId());
+            events[0]++;
+        });
+        log.info("Replayed {} order events from {} in {} ms, continuing with segment {}", events[0], this.directory,
+            (System.nanoTime() - start) / 1_000_000, segment);
+    }
+
+    @Override
+    public void publish(List<OrderEvent> events) {
+        lock.lock();
+        try {
+            try {
+                int skipped = 0;
+                for (OrderEvent event : events) {
+                    if (recentEventIds.contains(event.eventId())) {
+                        skipped++;
+                        continue;
+                    }
+                    ByteBuffer record = encode(event);
+                    if (!current.append(record)) {
+                        roll();
+                        current.append(record.rewind());
+                    }
+                    remember(event.eventId());
+                }
+                current.force();
+                if (skipped > 0) {
+                    log.info("Skipped {} order events already in the journal", skipped);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot append order events to " + directory, ex);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the whole journal, oldest segment first.
+     */
+    public void replay(Consumer<OrderEvent> consumer) throws IOException {
+        lock.lock();
+        try {
+            for (int number : segments().sorted().toList()) {
+                if (number == segment) {
+                    current.replay(record -> consumer.accept(decode(record)));
+                } else {
+                    try (MappedAppendLog closed = new MappedAppendLog(segmentPath(number), segmentSize)) {
+                        closed.replay(record -> consumer.accept(decode(record)));
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            current.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void roll() throws IOException {
+        current.close();
+        segment++;
+        current = new MappedAppendLog(segmentPath(segment), segmentSize);
+        log.info("Order journal rolled to segment {}", segment);
+    }
+
+    private void remember(long eventId) {
+        recentEventIds.add(eventId);
+        if (recentEventIds.size() > window) {
+            Iterator<Long> oldest = recentEventIds.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private Stream<Integer> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                .map(name -> Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                .toList()
+                .stream();
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("%s%06d%s", PREFIX, number, SUFFIX));
+    }
+
+    private static ByteBuffer encode(OrderEvent event) {
+        LocalDateTime occurredAt = event.occurredAt();
+        // enum ordinals are part of the file format, new constants only go at the end
+        return ByteBuffer.allocate(RECORD)
+            .putLong(event.eventId())
+            .putLong(event.orderId())
+            .put((byte) event.type().ordinal())
+            .put((byte) event.status().ordinal())
+            .putLong(occurredAt.toEpochSecond(ZoneOffset.UTC))
+            .putInt(occurredAt.getNano())
+            .flip();
+    }
+
+    private static OrderEvent decode(ByteBuffer record) {
+        return new OrderEvent(
+            record.getLong(),
+            record.getLong(),
+            OrderEventType.values()[record.get()],
+            OrderStatus.values()[record.get()],
+            LocalDateTime.ofEpochSecond(record.getLong(), record.getInt(), ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,159 @@
+package com.rohlik.shop.adapters.out.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Fixed size, memory-mapped file of length prefixed, checksummed records that are only ever
+ * appended. Each record is {@code [int length][int crc32][payload]}; a zero length marks the
+ * end of the log. Opening the file replays it up to the first record that is cut off or does
+ * not match its checksum, so a record torn by a crash is dropped together with anything after it.
+ * <p>
+ * Appended records survive a crash of the process right away, surviving a crash of the machine
+ * needs {@link #force()}.
+ */
+public class MappedAppendLog implements Closeable {
+    private static final int HEADER = 2 * Integer.BYTES;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // not synchronized, appends run on virtual threads and must not pin their carrier during mmap I/O
+    private final ReentrantLock lock = new ReentrantLock();
+    private int forced;
+
+    public MappedAppendLog(Path path, int capacity) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // an existing file keeps its size, a bigger capacity only applies to new files
+        long size = channel.size() > 0 ? channel.size() : capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.buffer.position(end());
+        this.forced = buffer.position();
+    }
+
+    /**
+     * Appends one record, returns {@code false} without writing anything when the log is full.
+     */
+    public boolean append(ByteBuffer payload) {
+        lock.lock();
+        try {
+            int length = payload.remaining();
+            if (length == 0) {
+                throw new IllegalArgumentException("Empty records cannot be appended, zero length marks the end of the log");
+            }
+            if (buffer.remaining() < HEADER + length) {
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            int start = buffer.position();
+            // payload and checksum first, the length makes the record visible
+            buffer.position(start + HEADER);
+            buffer.put(payload);
+            buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+            buffer.putInt(start, length);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands every record to {@code consumer} in append order, as a read-only buffer valid only during the call.
+     */
+    public void replay(Consumer<ByteBuffer> consumer) {
+        lock.lock();
+        try {
+            ByteBuffer view = buffer.duplicate();
+            int position = 0;
+            int end = buffer.position();
+            while (position < end) {
+                int length = view.getInt(position);
+                consumer.accept(view.slice(position + HEADER, length).asReadOnlyBuffer());
+                position += HEADER + length;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void force() {
+        lock.lock();
+        try {
+            // only the pages appended to since the last call, forcing the whole mapping costs as much as the file is big
+            int end = buffer.position();
+            if (end > forced) {
+                buffer.force(forced, end - forced);
+                forced = end;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bytes taken by the records so far.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return buffer.position();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int end() {
+        int position = 0;
+        while (buffer.capacity() - position >= HEADER) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.capacity() - position - HEADER) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(position + HEADER, length));
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                break;
+            }
+            position += HEADER + length;
+        }
+        // whatever follows is a torn tail, zero its length so later appends do not revive it
+        if (buffer.capacity() - position >= Integer.BYTES) {
+            buffer.putInt(position, 0);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,125 @@
+package com.rohlik.shop.adapters.out.log;
+
+import com.rohlik.shop.adapters.out.persistence.JpaOrderRepository;
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.application.service.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Orders in the database, every committed write also journaled to {@link MappedLogOrderStore}.
+ * Reads go to the database.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "shop.persistence.order-store", havingValue = "log")
+@RequiredArgsConstructor
+public class MappedLogOrderRepository implements OrderRepository {
+    private final JpaOrderRepository orderRepository;
+    private final MappedLogOrderStore orderStore;
+
+    @Override
+    public <S extends OrderEntity> S save(S order) {
+        S saved = orderRepository.save(order);
+        // version and item ids are only final once the transaction flushed
+        orderStore.afterCommit(() -> orderStore.orders(List.of(saved)));
+        return saved;
+    }
+
+    @Override
+    public <S extends OrderEntity> List<S> saveAll(Iterable<S> orders) {
+        List<S> saved = orderRepository.saveAll(orders);
+        orderStore.afterCommit(() -> orderStore.orders(saved));
+        return saved;
+    }
+
+    @Override
+    public int updateExpiredStatus(Collection<Long> ids, OrderStatus from, OrderStatus to, LocalDateTime now) {
+        int updated = orderRepository.updateExpiredStatus(ids, from, to, now);
+        List<Long> orderIds = List.copyOf(ids);
+        orderStore.afterCommit(() -> orderStore.expired(orderIds, from, to, now));
+        return updated;
+    }
+
+    @Override
+    public int repointItems(ProductEntity from, ProductEntity to, BigDecimal price, OrderStatus status) {
+        int repointed = orderRepository.repointItems(from, to, price, status);
+        Long fromId = from.getId();
+        Long toId = to.getId();
+        orderStore.afterCommit(() -> orderStore.repointed(fromId, toId, price, status));
+        return repointed;
+    }
+
+    @Override
+    public Optional<OrderEntity> findById(Long id) {
+        return orderRepository.findById(id);
+    }
+
+    @Override
+    public long count() {
+        return orderRepository.count();
+    }
+
+    @Override
+    public List<OrderEntity> findAllWithItems() {
+        return orderRepository.findAllWithItems();
+    }
+
+    @Override
+    public Optional<OrderEntity> findWithItemsById(Long id) {
+        return orderRepository.findWithItemsById(id);
+    }
+
+    @Override
+    public List<OrderEntity> findPage(OrderStatus status, LocalDateTime from, LocalDateTime to,
+                                      LocalDateTime afterCreatedAt, Long afterId, Pageable pageable) {
+        return orderRepository.findPage(status, from, to, afterCreatedAt, afterId, pageable);
+    }
+
+    @Override
+    public Stream<OrderItemRow> streamFilteredItemRows(OrderStatus status, LocalDateTime from, LocalDateTime to) {
+        return orderRepository.streamFilteredItemRows(status, from, to);
+    }
+
+    @Override
+    public Stream<OrderItemRow> streamItemRows(OrderStatus status, LocalDateTime from, LocalDateTime to, long afterId) {
+        return orderRepository.streamItemRows(status, from, to, afterId);
+    }
+
+    @Override
+    public List<Long> findExpiredIds(OrderStatus status, LocalDateTime now, Pageable pageable) {
+        return orderRepository.findExpiredIds(status, now, pageable);
+    }
+
+    @Override
+    public List<OrderExpiration> findExpirations(OrderStatus status) {
+        return orderRepository.findExpirations(status);
+    }
+
+    @Override
+    public List<ProductQuantity> sumQuantitiesByProduct(Collection<Long> orderIds) {
+        return orderRepository.sumQuantitiesByProduct(orderIds);
+    }
+
+    @Override
+    public List<ProductSales> sumSalesByProductAndStatus() {
+        return orderRepository.sumSalesByProductAndStatus();
+    }
+
+    @Override
+    public boolean existsItemOfProduct(Long productId, OrderStatus status) {
+        return orderRepository.existsItemOfProduct(productId, status);
+    }
+}
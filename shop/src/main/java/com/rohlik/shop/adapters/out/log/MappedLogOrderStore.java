@@ -0,0 +1,672 @@
+package com.rohlik.shop.adapters.out.log;
+
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Journal of every order and product written through {@link MappedLogOrderRepository} and
+ * {@link MappedLogProductRepository}, in an append-only {@link MappedAppendLog}. A write is one
+ * sequential append of what the transaction committed, whole orders and products or the bulk
+ * update that changed them. Nothing of the journaled state is kept in memory while running.
+ * <p>
+ * Startup replays the log into a temporary index and, when the database holds no products, from
+ * the index into the database in JDBC batches before {@code DataInitializer} runs. That is what the
+ * in-memory default database looks like after a restart, so orders, the catalog and its stock
+ * survive restarts without a file database. A database that kept its data is left alone.
+ * <p>
+ * Records are appended after their transaction committed, so a crash right after a commit loses
+ * it, and appends reach the disk on the next {@link #flush()}. A full log is rewritten by the next
+ * flush from one consistent read of the database, one record per product and order, and swapped
+ * in with an atomic move. Records committed until then are held in memory and appended after the
+ * swap. An append that fails is logged and repaired the same way, the transaction already committed.
+ * Stock adjustments are the one record that changes the result when replayed twice, so they commit
+ * outside of the moment a compaction reads the products and the ones that read holds are dropped.
+ * Users, idempotency keys and the outbox stay in the database only.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(name = "shop.persistence.order-store", havingValue = "log")
+public class MappedLogOrderStore {
+    // record types are part of the file format, new ones only get new numbers
+    private static final byte PRODUCT = 1;
+    // absolute levels, only found in logs written before stock was journaled as adjustments
+    private static final byte STOCK = 2;
+    private static final byte ORDER = 3;
+    private static final byte EXPIRED = 4;
+    private static final byte REPOINTED = 5;
+    private static final byte STOCK_ADJUSTED = 6;
+    private static final int TIME = Long.BYTES + Integer.BYTES;
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate restoreTransaction;
+    private final TransactionTemplate snapshotTransaction;
+    private final Path path;
+    private final int capacity;
+    // not synchronized, appends run on virtual threads too and must not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    // records committed while the log is full or being compacted, appended once the compacted log is in place
+    private final List<ByteBuffer> pending = new ArrayList<>();
+    // held shared by transactions adjusting stock until they completed, exclusively while compaction reads products
+    private final ReentrantReadWriteLock stockCommits = new ReentrantReadWriteLock();
+    private boolean compacting;
+    private volatile boolean compactionDue;
+    private MappedAppendLog orderLog;
+
+    public MappedLogOrderStore(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${shop.persistence.log.directory:data}") Path directory,
+                               @Value("${shop.persistence.log.order-capacity:64MB}") DataSize capacity) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.restoreTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        // its own transaction even when a commit triggers it, H2 reads serializable read-only ones from an MVCC snapshot
+        this.snapshotTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        this.snapshotTransaction.setReadOnly(true);
+        this.path = directory.resolve("orders.log");
+        this.capacity = Math.toIntExact(capacity.toBytes());
+        this.orderLog = new MappedAppendLog(path, this.capacity);
+    }
+
+    @PostConstruct
+    public void restore() {
+        long start = System.nanoTime();
+        Index index = new Index();
+        lock.lock();
+        try {
+            orderLog.replay(index::apply);
+        } finally {
+            lock.unlock();
+        }
+        long replayed = System.nanoTime();
+        log.info("Replayed {} products and {} orders from {} in {} ms", index.products.size(), index.orders.size(), path,
+            (replayed - start) / 1_000_000);
+        if (index.products.isEmpty()) {
+            return;
+        }
+        Integer existing = jdbcTemplate.queryForObject("select count(*) from product_entity", Integer.class);
+        if (existing != null && existing > 0) {
+            log.info("Database already holds products, orders journaled in {} not restored", path);
+            return;
+        }
+        restoreTransaction.executeWithoutResult(status -> insert(index));
+        log.info("Restored {} products and {} orders into the database in {} ms", index.products.size(),
+            index.orders.size(), (System.nanoTime() - replayed) / 1_000_000);
+    }
+
+    /**
+     * Runs {@code journal} once the current transaction committed, right away outside of one.
+     * A rolled back write leaves no record. A failing journal is logged instead of thrown, the
+     * caller's data is committed already, and the next flush rewrites the log from the database.
+     */
+    public void afterCommit(Runnable journal) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            journal(journal);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                journal(journal);
+            }
+        });
+    }
+
+    public void products(Collection<? extends ProductEntity> saved) {
+        for (ProductEntity product : saved) {
+            append(encode(product));
+        }
+    }
+
+    /**
+     * Runs {@code update}, which adds {@code changes} to the stock of their products, and journals
+     * the adjustments once they committed. Until then it keeps a compaction from reading the products,
+     * so the adjustments are either in that read or appended after it.
+     */
+    public void adjustStock(Map<Long, Integer> changes, Runnable update) {
+        ByteBuffer record = ByteBuffer.allocate(1 + Integer.BYTES + changes.size() * (Long.BYTES + Integer.BYTES))
+            .put(STOCK_ADJUSTED)
+            .putInt(changes.size());
+        changes.forEach((productId, change) -> record.putLong(productId).putInt(change));
+        record.flip();
+        stockCommits.readLock().lock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                update.run();
+                journal(() -> append(record));
+                return;
+            } finally {
+                stockCommits.readLock().unlock();
+            }
+        }
+        try {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    journal(() -> append(record));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    stockCommits.readLock().unlock();
+                }
+            });
+        } catch (RuntimeException ex) {
+            stockCommits.readLock().unlock();
+            throw ex;
+        }
+        update.run();
+    }
+
+    public void orders(Collection<? extends OrderEntity> saved) {
+        for (OrderEntity order : saved) {
+            append(encode(order));
+        }
+    }
+
+    public void expired(Collection<Long> orderIds, OrderStatus from, OrderStatus to, LocalDateTime now) {
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 + TIME + Integer.BYTES + orderIds.size() * Long.BYTES)
+            .put(EXPIRED)
+            .put((byte) from.ordinal())
+            .put((byte) to.ordinal());
+        putTime(record, now);
+        record.putInt(orderIds.size());
+        orderIds.forEach(record::putLong);
+        append(record.flip());
+    }
+
+    public void repointed(Long from, Long to, BigDecimal price, OrderStatus status) {
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 * Long.BYTES + 1 + decimalSize(price))
+            .put(REPOINTED)
+            .putLong(from)
+            .putLong(to)
+            .put((byte) status.ordinal());
+        putDecimal(record, price);
+        append(record.flip());
+    }
+
+    @Scheduled(fixedDelayString = "${shop.persistence.log.order-flush-interval-ms:1000}")
+    public void flush() {
+        if (compactionDue) {
+            compact();
+        }
+        lock.lock();
+        try {
+            orderLog.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (compactionDue) {
+            compact();
+        }
+        lock.lock();
+        try {
+            if (!pending.isEmpty()) {
+                log.warn("Closing {} with {} records that did not fit, they are lost", path, pending.size());
+            }
+            orderLog.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void journal(Runnable journal) {
+        try {
+            journal.run();
+        } catch (RuntimeException ex) {
+            log.error("Journaling a committed write to {} failed, the next flush rewrites it from the database", path, ex);
+            compactionDue = true;
+        }
+    }
+
+    private void append(ByteBuffer record) {
+        lock.lock();
+        try {
+            if (compacting || compactionDue || !orderLog.append(record)) {
+                pending.add(record);
+                compactionDue = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rewrites the log from the database without holding the lock, so commits keep appending to
+     * {@link #pending} meanwhile. Everything committed before the compaction started is in the
+     * database read, everything after is in {@link #pending}. Replaying a record the read already
+     * holds changes nothing, newer versions win and bulk updates only match rows not updated yet.
+     * Stock adjustments would add up twice, so the ones the read holds are dropped from {@link #pending}.
+     */
+    private void compact() {
+        lock.lock();
+        try {
+            if (compacting) {
+                return;
+            }
+            compacting = true;
+            compactionDue = false;
+        } finally {
+            lock.unlock();
+        }
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        boolean written = false;
+        int[] counts = new int[2];
+        try {
+            Files.deleteIfExists(compacted);
+            try (MappedAppendLog target = new MappedAppendLog(compacted, capacity)) {
+                // taken before the transaction, whose snapshot may start with it
+                stockCommits.writeLock().lock();
+                try {
+                    snapshotTransaction.executeWithoutResult(status -> {
+                        try {
+                            counts[0] = writeProducts(target);
+                            dropPendingStockAdjustments();
+                        } finally {
+                            stockCommits.writeLock().unlock();
+                        }
+                        counts[1] = writeOrders(target);
+                    });
+                } finally {
+                    if (stockCommits.isWriteLockedByCurrentThread()) {
+                        stockCommits.writeLock().unlock();
+                    }
+                }
+            }
+            written = true;
+        } catch (IOException | RuntimeException ex) {
+            log.error("Cannot compact order log {}, will retry on the next flush", path, ex);
+        }
+
+        lock.lock();
+        try {
+            if (written) {
+                swap(compacted);
+                log.info("Compacted {} to {} products and {} orders, {} records appended since", path, counts[0],
+                    counts[1], pending.size());
+            }
+            Iterator<ByteBuffer> records = pending.iterator();
+            while (records.hasNext() && orderLog.append(records.next().duplicate())) {
+                records.remove();
+            }
+            compactionDue |= !pending.isEmpty();
+            compacting = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adjustments journaled so far committed before the products were read, so the read holds them already.
+     */
+    private void dropPendingStockAdjustments() {
+        lock.lock();
+        try {
+            pending.removeIf(record -> record.get(0) == STOCK_ADJUSTED);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void swap(Path compacted) {
+        try {
+            orderLog.close();
+            try {
+                Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                // the compacted log after a successful move, the untouched one otherwise
+                orderLog = new MappedAppendLog(path, capacity);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot swap in compacted order log " + path, ex);
+        }
+    }
+
+    private int writeProducts(MappedAppendLog target) {
+        int[] count = new int[1];
+        jdbcTemplate.query("select id, version, active, stock_quantity, price, name from product_entity order by id",
+            (RowCallbackHandler) row -> {
+                appendCompacted(target, encode(new ProductState(row.getLong("id"), row.getLong("version"),
+                    row.getBoolean("active"), row.getInt("stock_quantity"), row.getBigDecimal("price"), row.getString("name"))));
+                count[0]++;
+            });
+        return count[0];
+    }
+
+    private int writeOrders(MappedAppendLog target) {
+        // one pass over orders joined with their items, an order is complete once the next one starts
+        List<OrderState> current = new ArrayList<>(1);
+        int[] count = new int[1];
+        jdbcTemplate.query("select o.id, o.version, o.status, o.created_at, o.expires_at, i.id item_id, i.product_id, "
+                + "i.quantity, i.price from shop_order o left join order_item_entity i on i.order_id = o.id order by o.id, i.id",
+            (RowCallbackHandler) row -> {
+                long id = row.getLong("id");
+                if (current.isEmpty() || current.get(0).id() != id) {
+                    if (!current.isEmpty()) {
+                        appendCompacted(target, encode(current.get(0)));
+                        count[0]++;
+                    }
+                    Timestamp expiresAt = row.getTimestamp("expires_at");
+                    current.clear();
+                    current.add(new OrderState(id, row.getLong("version"), OrderStatus.valueOf(row.getString("status")),
+                        row.getTimestamp("created_at").toLocalDateTime(),
+                        expiresAt != null ? expiresAt.toLocalDateTime() : null, new ArrayList<>()));
+                }
+                long itemId = row.getLong("item_id");
+                if (!row.wasNull()) {
+                    current.get(0).items().add(new ItemState(itemId, row.getLong("product_id"), row.getInt("quantity"),
+                        row.getBigDecimal("price")));
+                }
+            });
+        if (!current.isEmpty()) {
+            appendCompacted(target, encode(current.get(0)));
+            count[0]++;
+        }
+        return count[0];
+    }
+
+    private void appendCompacted(MappedAppendLog target, ByteBuffer record) {
+        if (!target.append(record)) {
+            throw new IllegalStateException("Order log " + path + " cannot hold all products and orders, "
+                + "raise shop.persistence.log.order-capacity");
+        }
+    }
+
+    private void insert(Index index) {
+        jdbcTemplate.batchUpdate(
+            "insert into product_entity (id, name, price, stock_quantity, version, active) values (?, ?, ?, ?, ?, ?)",
+            index.products.values(), BATCH_SIZE, (statement, product) -> {
+                statement.setLong(1, product.id());
+                statement.setString(2, product.name());
+                statement.setBigDecimal(3, product.price());
+                statement.setInt(4, product.stock());
+                statement.setLong(5, product.version());
+                statement.setBoolean(6, product.active());
+            });
+        jdbcTemplate.batchUpdate(
+            "insert into shop_order (id, created_at, expires_at, status, version) values (?, ?, ?, ?, ?)",
+            index.orders.values(), BATCH_SIZE, (statement, order) -> {
+                statement.setLong(1, order.id());
+                statement.setTimestamp(2, Timestamp.valueOf(order.createdAt()));
+                statement.setTimestamp(3, order.expiresAt() != null ? Timestamp.valueOf(order.expiresAt()) : null);
+                statement.setString(4, order.status().name());
+                statement.setLong(5, order.version());
+            });
+        List<Object[]> items = new ArrayList<>();
+        index.orders.values().forEach(order -> order.items().forEach(item ->
+            items.add(new Object[]{item.id(), order.id(), item.productId(), item.quantity(), item.price()})));
+        jdbcTemplate.batchUpdate(
+            "insert into order_item_entity (id, order_id, product_id, quantity, price) values (?, ?, ?, ?, ?)",
+            items, BATCH_SIZE, (statement, item) -> {
+                for (int i = 0; i < item.length; i++) {
+                    statement.setObject(i + 1, item[i]);
+                }
+            });
+        restartSequence("product_entity", "product_seq");
+        restartSequence("shop_order", "shop_order_seq");
+        restartSequence("order_item_entity", "order_item_seq");
+    }
+
+    private void restartSequence(String table, String sequence) {
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from " + table, Long.class);
+        if (maxId == null) {
+            return;
+        }
+        // pooled generators hand out the block below the value they fetch
+        Long increment = jdbcTemplate.queryForObject(
+            "select increment from information_schema.sequences where lower(sequence_name) = ?", Long.class, sequence);
+        jdbcTemplate.execute("alter sequence " + sequence + " restart with " + (maxId + increment));
+    }
+
+    private static ByteBuffer encode(ProductEntity product) {
+        return encode(new ProductState(product.getId(), product.getVersion(), product.isActive(),
+            product.getStockQuantity(), product.getPrice(), product.getName()));
+    }
+
+    private static ByteBuffer encode(ProductState product) {
+        byte[] name = product.name().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(1 + 2 * Long.BYTES + 1 + Integer.BYTES + decimalSize(product.price())
+            + Integer.BYTES + name.length);
+        record.put(PRODUCT)
+            .putLong(product.id())
+            .putLong(product.version())
+            .put((byte) (product.active() ? 1 : 0))
+            .putInt(product.stock());
+        putDecimal(record, product.price());
+        return record.putInt(name.length).put(name).flip();
+    }
+
+    private static ByteBuffer encode(OrderEntity order) {
+        List<ItemState> items = order.getItems().stream()
+            .map(item -> new ItemState(item.getId(), item.getProduct().getId(), item.getQuantity(), item.getPrice()))
+            .toList();
+        return encode(new OrderState(order.getId(), order.getVersion(), order.getStatus(), order.getCreatedAt(),
+            order.getExpiresAt(), items));
+    }
+
+    private static ByteBuffer encode(OrderState order) {
+        int size = 1 + 2 * Long.BYTES + 1 + TIME + 1 + (order.expiresAt() != null ? TIME : 0) + Integer.BYTES;
+        for (ItemState item : order.items()) {
+            size += 2 * Long.BYTES + Integer.BYTES + decimalSize(item.price());
+        }
+        // enum ordinals are part of the file format, new constants only go at the end
+        ByteBuffer record = ByteBuffer.allocate(size)
+            .put(ORDER)
+            .putLong(order.id())
+            .putLong(order.version())
+            .put((byte) order.status().ordinal());
+        putTime(record, order.createdAt());
+        record.put((byte) (order.expiresAt() != null ? 1 : 0));
+        if (order.expiresAt() != null) {
+            putTime(record, order.expiresAt());
+        }
+        record.putInt(order.items().size());
+        for (ItemState item : order.items()) {
+            record.putLong(item.id()).putLong(item.productId()).putInt(item.quantity());
+            putDecimal(record, item.price());
+        }
+        return record.flip();
+    }
+
+    private static void putTime(ByteBuffer record, LocalDateTime time) {
+        record.putLong(time.toEpochSecond(ZoneOffset.UTC)).putInt(time.getNano());
+    }
+
+    private static LocalDateTime getTime(ByteBuffer record) {
+        return LocalDateTime.ofEpochSecond(record.getLong(), record.getInt(), ZoneOffset.UTC);
+    }
+
+    private static int decimalSize(BigDecimal decimal) {
+        return Integer.BYTES + 1 + decimal.unscaledValue().toByteArray().length;
+    }
+
+    private static void putDecimal(ByteBuffer record, BigDecimal decimal) {
+        byte[] unscaled = decimal.unscaledValue().toByteArray();
+        record.putInt(decimal.scale()).put((byte) unscaled.length).put(unscaled);
+    }
+
+    private static BigDecimal getDecimal(ByteBuffer record) {
+        int scale = record.getInt();
+        byte[] unscaled = new byte[Byte.toUnsignedInt(record.get())];
+        record.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static String getString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Latest state of every journaled product and order, only built while restoring.
+     */
+    private final class Index {
+        private final Map<Long, ProductState> products = new TreeMap<>();
+        private final Map<Long, OrderState> orders = new TreeMap<>();
+        // orders with items of a product, so a repoint only visits those
+        private final Map<Long, Set<Long>> ordersByProduct = new HashMap<>();
+        // adjustments appended before the product they belong to
+        private final Map<Long, Integer> earlyAdjustments = new HashMap<>();
+
+        void apply(ByteBuffer record) {
+            switch (record.get()) {
+                case PRODUCT -> {
+                    ProductState product = new ProductState(record.getLong(), record.getLong(), record.get() == 1,
+                        record.getInt(), getDecimal(record), getString(record));
+                    ProductState current = products.get(product.id());
+                    if (current == null) {
+                        Integer change = earlyAdjustments.remove(product.id());
+                        products.put(product.id(), change == null ? product : product.withStock(product.stock() + change));
+                    } else if (product.version() >= current.version()) {
+                        // stock is adjusted by the ledger, a catalog save may carry a stale level
+                        products.put(product.id(), product.withStock(current.stock()));
+                    }
+                }
+                case STOCK -> {
+                    long productId = record.getLong();
+                    int stock = record.getInt();
+                    products.computeIfPresent(productId, (id, product) -> product.withStock(stock));
+                }
+                case STOCK_ADJUSTED -> {
+                    int count = record.getInt();
+                    for (int i = 0; i < count; i++) {
+                        long productId = record.getLong();
+                        int change = record.getInt();
+                        // adjustments add up, so commits appended out of order still end at the committed level
+                        if (products.computeIfPresent(productId, (id, product) -> product.withStock(product.stock() + change)) == null) {
+                            earlyAdjustments.merge(productId, change, Integer::sum);
+                        }
+                    }
+                }
+                case ORDER -> {
+                    long id = record.getLong();
+                    long version = record.getLong();
+                    OrderStatus status = OrderStatus.values()[record.get()];
+                    LocalDateTime createdAt = getTime(record);
+                    LocalDateTime expiresAt = record.get() == 1 ? getTime(record) : null;
+                    int count = record.getInt();
+                    List<ItemState> items = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        items.add(new ItemState(record.getLong(), record.getLong(), record.getInt(), getDecimal(record)));
+                    }
+                    OrderState current = orders.get(id);
+                    // appends of concurrent commits can arrive out of order, the newer version wins
+                    if (current == null || version >= current.version()) {
+                        orders.put(id, new OrderState(id, version, status, createdAt, expiresAt, items));
+                        items.forEach(item -> ordersByProduct.computeIfAbsent(item.productId(), productId -> new HashSet<>()).add(id));
+                    }
+                }
+                case EXPIRED -> {
+                    OrderStatus from = OrderStatus.values()[record.get()];
+                    OrderStatus to = OrderStatus.values()[record.get()];
+                    LocalDateTime now = getTime(record);
+                    int count = record.getInt();
+                    for (int i = 0; i < count; i++) {
+                        orders.computeIfPresent(record.getLong(), (id, order) ->
+                            order.status() == from && order.expiresAt() != null && !order.expiresAt().isAfter(now)
+                                ? order.withStatus(to) : order);
+                    }
+                }
+                case REPOINTED -> {
+                    long from = record.getLong();
+                    long to = record.getLong();
+                    OrderStatus status = OrderStatus.values()[record.get()];
+                    BigDecimal price = getDecimal(record);
+                    Set<Long> candidates = ordersByProduct.get(from);
+                    if (candidates == null) {
+                        return;
+                    }
+                    Iterator<Long> orderIds = candidates.iterator();
+                    while (orderIds.hasNext()) {
+                        Long orderId = orderIds.next();
+                        OrderState order = orders.get(orderId);
+                        if (order.status() != status) {
+                            continue;
+                        }
+                        orderIds.remove();
+                        OrderState repointed = order.repoint(from, to, price);
+                        // ids of older versions may linger, only orders still holding the product move
+                        if (repointed != order) {
+                            orders.put(orderId, repointed);
+                            ordersByProduct.computeIfAbsent(to, productId -> new HashSet<>()).add(orderId);
+                        }
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown record type in order log " + path);
+            }
+        }
+    }
+
+    private record ProductState(long id, long version, boolean active, int stock, BigDecimal price, String name) {
+        ProductState withStock(int stock) {
+            return new ProductState(id, version, active, stock, price, name);
+        }
+    }
+
+    private record OrderState(long id, long version, OrderStatus status, LocalDateTime createdAt,
+                              LocalDateTime expiresAt, List<ItemState> items) {
+        OrderState withStatus(OrderStatus status) {
+            // the bulk update bumps the version like a save would
+            return new OrderState(id, version + 1, status, createdAt, expiresAt, items);
+        }
+
+        OrderState repoint(long from, long to, BigDecimal price) {
+            if (items.stream().noneMatch(item -> item.productId() == from)) {
+                return this;
+            }
+            return new OrderState(id, version, status, createdAt, expiresAt, items.stream()
+                .map(item -> item.productId() == from ? new ItemState(item.id(), to, item.quantity(), price) : item)
+                .toList());
+        }
+    }
+
+    private record ItemState(long id, long productId, int quantity, BigDecimal price) {}
+}
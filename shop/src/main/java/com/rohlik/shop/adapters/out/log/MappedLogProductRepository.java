@@ -0,0 +1,88 @@
+package com.rohlik.shop.adapters.out.log;
+
+import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.application.service.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Products in the database, every committed write, stock adjustments included, also journaled to
+ * {@link MappedLogOrderStore}. Reads go to the database.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "shop.persistence.order-store", havingValue = "log")
+@RequiredArgsConstructor
+public class MappedLogProductRepository implements ProductRepository {
+    private final JpaProductRepository productRepository;
+    private final MappedLogOrderStore orderStore;
+
+    @Override
+    public <S extends ProductEntity> S save(S product) {
+        S saved = productRepository.save(product);
+        orderStore.afterCommit(() -> orderStore.products(List.of(saved)));
+        return saved;
+    }
+
+    @Override
+    public <S extends ProductEntity> List<S> saveAll(Iterable<S> products) {
+        List<S> saved = productRepository.saveAll(products);
+        orderStore.afterCommit(() -> orderStore.products(saved));
+        return saved;
+    }
+
+    @Override
+    public void adjustStockQuantities(Map<Long, Integer> changes) {
+        orderStore.adjustStock(changes, () -> productRepository.adjustStockQuantities(changes));
+    }
+
+    @Override
+    public Optional<ProductEntity> findById(Long id) {
+        return productRepository.findById(id);
+    }
+
+    @Override
+    public List<ProductEntity> findAllById(Iterable<Long> ids) {
+        return productRepository.findAllById(ids);
+    }
+
+    @Override
+    public List<ProductEntity> findAll() {
+        return productRepository.findAll();
+    }
+
+    @Override
+    public long count() {
+        return productRepository.count();
+    }
+
+    @Override
+    public List<ProductEntity> findByActiveTrue() {
+        return productRepository.findByActiveTrue();
+    }
+
+    @Override
+    public Page<ProductEntity> findByActiveTrue(Pageable pageable) {
+        return productRepository.findByActiveTrue(pageable);
+    }
+
+    @Override
+    public List<ProductEntity> findByNameIn(Collection<String> names) {
+        return productRepository.findByNameIn(names);
+    }
+
+    @Override
+    public List<StockLevel> findActiveStockLevels() {
+        return productRepository.findActiveStockLevels();
+    }
+}
@@ -0,0 +1,193 @@
+package com.rohlik.shop.adapters.out.log;
+
+import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.application.service.ProductRepository;
+import com.rohlik.shop.application.service.StockStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps stock levels in an append-only {@link MappedAppendLog} with the latest level of every
+ * product indexed in memory. An adjustment is a sequential append of the new level instead of a row
+ * update and startup replays the log, so levels survive restarts even when the catalog does not.
+ * <p>
+ * The log cannot roll back, so an adjustment made inside a transaction is appended once that
+ * transaction committed and a crash in between loses it, like a record of {@link MappedLogOrderStore}.
+ * An append that fails is retried by the next flush. Products the log has not seen yet fall back to
+ * the level in the catalog. When the log fills
+ * up it is rewritten with one record per product and swapped in with an atomic move. The levels
+ * are net of reservations of pending orders, so the store refuses to start on an in-memory
+ * database, which would lose those orders and leak their stock on every restart, unless
+ * {@link MappedLogOrderStore} journals the orders as well.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "shop.persistence.stock-store", havingValue = "log")
+public class MappedLogStockStore implements StockStore {
+    private static final int RECORD = Long.BYTES + Integer.BYTES;
+
+    private final ProductRepository productRepository;
+    private final Path path;
+    private final int capacity;
+    private final Map<Long, Integer> index = new ConcurrentHashMap<>();
+    // committed adjustments whose append failed, by product
+    private final Map<Long, Integer> failed = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private MappedAppendLog stockLog;
+
+    public MappedLogStockStore(ProductRepository productRepository,
+                               @Value("${spring.datasource.url:}") String datasourceUrl,
+                               @Value("${shop.persistence.order-store:jpa}") String orderStore,
+                               @Value("${shop.persistence.log.directory:data}") Path directory,
+                               @Value("${shop.persistence.log.stock-capacity:4MB}") DataSize capacity) throws IOException {
+        if (!orderStore.equals("log")) {
+            PersistentDatasource.require(datasourceUrl, "shop.persistence.stock-store=log");
+        }
+        this.productRepository = productRepository;
+        this.path = directory.resolve("stock.log");
+        this.capacity = Math.toIntExact(capacity.toBytes());
+        long start = System.nanoTime();
+        this.stockLog = new MappedAppendLog(path, this.capacity);
+        stockLog.replay(record -> index.put(record.getLong(), record.getInt()));
+        log.info("Replayed {} stock levels from {} in {} ms", index.size(), path,
+            (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public Map<Long, Integer> loadLevels() {
+        Map<Long, Integer> levels = new LinkedHashMap<>();
+        for (ProductRepository.StockLevel level : productRepository.findActiveStockLevels()) {
+            levels.put(level.getId(), index.getOrDefault(level.getId(), level.getStockQuantity()));
+        }
+        return levels;
+    }
+
+    @Override
+    public Optional<Integer> findLevel(Long productId) {
+        Integer level = index.get(productId);
+        if (level != null) {
+            return Optional.of(level);
+        }
+        return productRepository.findById(productId).map(ProductEntity::getStockQuantity);
+    }
+
+    @Override
+    public void adjustLevels(Map<Long, Integer> changes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            changes.forEach(this::append);
+            return;
+        }
+        Map<Long, Integer> committed = new LinkedHashMap<>(changes);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                committed.forEach((productId, change) -> {
+                    try {
+                        append(productId, change);
+                    } catch (RuntimeException ex) {
+                        log.error("Appending a committed stock adjustment of product {} to {} failed, the next flush retries it",
+                            productId, path, ex);
+                        failed.merge(productId, change, Integer::sum);
+                    }
+                });
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${shop.persistence.log.stock-flush-interval-ms:500}")
+    public void flush() {
+        for (Long productId : failed.keySet()) {
+            Integer change = failed.remove(productId);
+            if (change != null) {
+                try {
+                    append(productId, change);
+                } catch (RuntimeException ex) {
+                    failed.merge(productId, change, Integer::sum);
+                    throw ex;
+                }
+            }
+        }
+        lock.lock();
+        try {
+            stockLog.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            stockLog.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(Long productId, int change) {
+        lock.lock();
+        try {
+            // adjustments add up in any order, so concurrent commits need no ordering among each other
+            int level = findLevel(productId).orElseThrow(() ->
+                new IllegalArgumentException("Product not found with id: " + productId)) + change;
+            ByteBuffer record = record(productId, level);
+            if (!stockLog.append(record)) {
+                compact();
+                if (!stockLog.append(record.rewind())) {
+                    throw new IllegalStateException("Stock log " + path + " is too small even after compaction");
+                }
+            }
+            index.put(productId, level);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void compact() {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            Files.deleteIfExists(compacted);
+            try (MappedAppendLog target = new MappedAppendLog(compacted, capacity)) {
+                for (Map.Entry<Long, Integer> entry : index.entrySet()) {
+                    if (!target.append(record(entry.getKey(), entry.getValue()))) {
+                        throw new IllegalStateException("Stock log " + path + " cannot hold " + index.size() + " products");
+                    }
+                }
+            }
+            stockLog.close();
+            try {
+                Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                // the compacted log after a successful move, the untouched one otherwise
+                stockLog = new MappedAppendLog(path, capacity);
+            }
+            log.info("Compacted {} to {} stock levels", path, index.size());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot compact stock log " + path, ex);
+        }
+    }
+
+    private static ByteBuffer record(Long productId, int stockQuantity) {
+        return ByteBuffer.allocate(RECORD).putLong(productId).putInt(stockQuantity).flip();
+    }
+}
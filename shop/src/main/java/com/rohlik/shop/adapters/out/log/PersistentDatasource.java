@@ -0,0 +1,23 @@
+package com.rohlik.shop.adapters.out.log;
+
+/**
+ * The log adapters keep database ids, stock levels net of pending reservations and order event
+ * ids, next to what the database keeps. They are only consistent with a database that survives
+ * restarts as well.
+ */
+public final class PersistentDatasource {
+
+    private PersistentDatasource() {
+    }
+
+    /**
+     * @throws IllegalStateException when {@code url} is an in-memory database or not set, which
+     *                               Spring Boot also turns into an embedded in-memory one
+     */
+    public static void require(String url, String setting) {
+        if (url == null || url.isBlank() || url.contains(":mem:")) {
+            throw new IllegalStateException(setting + " needs a datasource that survives restarts, but spring.datasource.url is "
+                + (url == null || url.isBlank() ? "not set" : url) + ". Use a file or server database, e.g. jdbc:h2:file:./data/shopdb");
+        }
+    }
+}
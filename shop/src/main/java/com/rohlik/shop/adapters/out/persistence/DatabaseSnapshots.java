@@ -0,0 +1,298 @@
+package com.rohlik.shop.adapters.out.persistence;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Periodic binary snapshots of users, products and orders for the in-memory database, restored in
+ * bulk on startup before {@code DataInitializer} runs and before the web server accepts requests.
+ * <p>
+ * A snapshot is taken in one read-only snapshot transaction, so it is consistent across tables
+ * and does not block writers. Orders committed after the last snapshot are lost on restart.
+ * Stock levels commit together with the orders that change them, so the product rows of a snapshot
+ * match its orders, and {@code StockReservationLedger} rebuilds its counters from the restored rows.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(name = "shop.persistence.snapshot.enabled", havingValue = "true")
+public class DatabaseSnapshots {
+    private static final int MAGIC = 0x53484F50; // "SHOP"
+    private static final int FORMAT_VERSION = 1;
+    private static final int BATCH_SIZE = 500;
+
+    // parents before children, restore inserts in this order
+    private static final List<Table> TABLES = List.of(
+        new Table("users", "id", null),
+        new Table("product_entity", "id", "product_seq"),
+        new Table("shop_order", "id", "shop_order_seq"),
+        new Table("order_item_entity", "id", "order_item_seq"),
+        new Table("order_outbox", "id", "order_outbox_seq"),
+        // keys are assigned by clients, there is nothing to restart
+        new Table("idempotency_key", "idempotency_key", null));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final TransactionTemplate restoreTransaction;
+    private final Path path;
+    private final Timer snapshotTimer;
+
+    public DatabaseSnapshots(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${shop.persistence.snapshot.path:data/snapshot.bin}") Path path) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        // H2 runs serializable read-only transactions on an MVCC snapshot, without locks
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        this.snapshotTransaction.setReadOnly(true);
+        this.restoreTransaction = new TransactionTemplate(transactionManager);
+        this.path = path;
+        this.snapshotTimer = Timer.builder("shop.snapshot.write")
+            .description("Time spent writing a database snapshot")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (!Files.exists(path)) {
+            log.info("No database snapshot at {}, starting empty", path);
+            return;
+        }
+        Integer products = jdbcTemplate.queryForObject("select count(*) from product_entity", Integer.class);
+        if (products != null && products > 0) {
+            log.info("Database already holds data, snapshot {} not restored", path);
+            return;
+        }
+        long start = System.nanoTime();
+        long rows = restoreTransaction.execute(status -> read());
+        log.info("Restored {} rows from snapshot {} in {} ms", rows, path,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Scheduled(fixedDelayString = "${shop.persistence.snapshot.interval-ms:300000}",
+               initialDelayString = "${shop.persistence.snapshot.interval-ms:300000}")
+    public void snapshot() {
+        long rows = snapshotTimer.record(() -> snapshotTransaction.execute(status -> write()));
+        log.info("Wrote {} rows to snapshot {}", rows, path);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    private long write() {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long rows = 0;
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temporary), 1 << 16)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(TABLES.size());
+                for (Table table : TABLES) {
+                    rows += writeTable(table, out);
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot write database snapshot " + path, ex);
+        }
+        return rows;
+    }
+
+    private long writeTable(Table table, DataOutputStream out) {
+        String query = "select * from " + table.name() + " order by " + table.key();
+        return jdbcTemplate.query(query, (ResultSetExtractor<Long>) resultSet -> {
+            try {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                int[] types = new int[metaData.getColumnCount()];
+                out.writeUTF(table.name());
+                out.writeInt(types.length);
+                for (int i = 0; i < types.length; i++) {
+                    types[i] = metaData.getColumnType(i + 1);
+                    out.writeUTF(metaData.getColumnName(i + 1));
+                    out.writeInt(types[i]);
+                }
+                long rows = 0;
+                while (resultSet.next()) {
+                    out.writeBoolean(true);
+                    for (int i = 0; i < types.length; i++) {
+                        writeValue(resultSet, i + 1, types[i], out);
+                    }
+                    rows++;
+                }
+                out.writeBoolean(false);
+                return rows;
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot write table " + table.name() + " to snapshot", ex);
+            }
+        });
+    }
+
+    private static void writeValue(ResultSet resultSet, int column, int type, DataOutputStream out)
+            throws IOException, SQLException {
+        Object value = resultSet.getObject(column);
+        out.writeBoolean(value != null);
+        if (value == null) {
+            return;
+        }
+        switch (type) {
+            case Types.BIGINT -> out.writeLong(resultSet.getLong(column));
+            case Types.INTEGER, Types.SMALLINT, Types.TINYINT -> out.writeInt(resultSet.getInt(column));
+            case Types.BOOLEAN, Types.BIT -> out.writeBoolean(resultSet.getBoolean(column));
+            case Types.DECIMAL, Types.NUMERIC -> {
+                BigDecimal decimal = resultSet.getBigDecimal(column);
+                byte[] unscaled = decimal.unscaledValue().toByteArray();
+                out.writeInt(decimal.scale());
+                out.writeByte(unscaled.length);
+                out.write(unscaled);
+            }
+            case Types.TIMESTAMP -> {
+                Timestamp timestamp = resultSet.getTimestamp(column);
+                out.writeLong(timestamp.getTime());
+                out.writeInt(timestamp.getNanos());
+            }
+            // strings and enums
+            default -> out.writeUTF(resultSet.getString(column));
+        }
+    }
+
+    private long read() {
+        long rows = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path), 1 << 16)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported database snapshot format in " + path);
+            }
+            int tables = in.readInt();
+            for (int t = 0; t < tables; t++) {
+                rows += readTable(in);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read database snapshot " + path, ex);
+        }
+        TABLES.forEach(this::restartIds);
+        return rows;
+    }
+
+    private long readTable(DataInputStream in) throws IOException {
+        String table = in.readUTF();
+        Table known = TABLES.stream().filter(candidate -> candidate.name().equals(table)).findFirst()
+            .orElseThrow(() -> new IllegalStateException("Unknown table " + table + " in snapshot " + path));
+        int columnCount = in.readInt();
+        List<String> columns = new ArrayList<>(columnCount);
+        int[] types = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns.add(in.readUTF());
+            types[i] = in.readInt();
+        }
+        String insert = "insert into " + known.name() + " (" + String.join(", ", columns) + ") values ("
+            + String.join(", ", Collections.nCopies(columnCount, "?")) + ")";
+
+        long rows = 0;
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        while (in.readBoolean()) {
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = readValue(types[i], in);
+            }
+            batch.add(row);
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(insert, batch);
+                rows += batch.size();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(insert, batch);
+            rows += batch.size();
+        }
+        return rows;
+    }
+
+    private static Object readValue(int type, DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return switch (type) {
+            case Types.BIGINT -> in.readLong();
+            case Types.INTEGER, Types.SMALLINT, Types.TINYINT -> in.readInt();
+            case Types.BOOLEAN, Types.BIT -> in.readBoolean();
+            case Types.DECIMAL, Types.NUMERIC -> {
+                int scale = in.readInt();
+                byte[] unscaled = new byte[in.readUnsignedByte()];
+                in.readFully(unscaled);
+                yield new BigDecimal(new BigInteger(unscaled), scale);
+            }
+            case Types.TIMESTAMP -> {
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                yield timestamp;
+            }
+            default -> in.readUTF();
+        };
+    }
+
+    private void restartIds(Table table) {
+        if (!table.key().equals("id")) {
+            return;
+        }
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from " + table.name(), Long.class);
+        if (maxId == null) {
+            return;
+        }
+        if (table.sequence() == null) {
+            jdbcTemplate.execute("alter table " + table.name() + " alter column id restart with " + (maxId + 1));
+            return;
+        }
+        // pooled generators hand out the block below the value they fetch
+        Long increment = jdbcTemplate.queryForObject(
+            "select increment from information_schema.sequences where lower(sequence_name) = ?",
+            Long.class, table.sequence());
+        jdbcTemplate.execute("alter sequence " + table.sequence() + " restart with " + (maxId + increment));
+    }
+
+    private record Table(String name, String key, String sequence) {}
+}
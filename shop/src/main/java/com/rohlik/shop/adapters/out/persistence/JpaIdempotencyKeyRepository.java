@@ -0,0 +1,28 @@
+package com.rohlik.shop.adapters.out.persistence;
+
+import com.rohlik.shop.application.domain.IdempotencyKeyEntity;
+import com.rohlik.shop.application.service.IdempotencyKeyRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface JpaIdempotencyKeyRepository extends JpaRepository<IdempotencyKeyEntity, String>, IdempotencyKeyRepository {
+    // declared by both parents, redeclared so calls on this type are not ambiguous
+    @Override
+    <S extends IdempotencyKeyEntity> S saveAndFlush(S entity);
+
+    @Override
+    Optional<IdempotencyKeyEntity> findById(String idempotencyKey);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKeyEntity k where k.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
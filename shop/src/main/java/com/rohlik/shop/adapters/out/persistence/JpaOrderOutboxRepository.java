@@ -0,0 +1,17 @@
+package com.rohlik.shop.adapters.out.persistence;
+
+import com.rohlik.shop.application.domain.OrderOutboxEntity;
+import com.rohlik.shop.application.service.OrderOutboxRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface JpaOrderOutboxRepository extends JpaRepository<OrderOutboxEntity, Long>, OrderOutboxRepository {
+
+    @Query("select e from OrderOutboxEntity e order by e.id")
+    List<OrderOutboxEntity> findOldest(Pageable pageable);
+}
@@ -2,12 +2,134 @@ package com.rohlik.shop.adapters.out.persistence;
 
 import com.rohlik.shop.application.domain.OrderEntity;
 import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.application.service.OrderRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface JpaOrderRepository extends JpaRepository<OrderEntity, Long>  {
+public interface JpaOrderRepository extends JpaRepository<OrderEntity, Long>, OrderRepository {
+    // declared by both parents, redeclared so calls on this type are not ambiguous
+    @Override
+    <S extends OrderEntity> S save(S entity);
+
+    @Override
+    Optional<OrderEntity> findById(Long id);
+
     List<OrderEntity> findByStatus(OrderStatus status);
-} 
\ No newline at end of file
+
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    @Query("select o from OrderEntity o")
+    List<OrderEntity> findAllWithItems();
+
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    Optional<OrderEntity> findWithItemsById(Long id);
+
+    @Query("select o.id from OrderEntity o where o.status = :status and o.expiresAt < :now order by o.expiresAt")
+    List<Long> findExpiredIds(@Param("status") OrderStatus status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("select i.product.id as productId, sum(i.quantity) as quantity, count(distinct i.order.id) as orders " +
+           "from OrderItemEntity i where i.order.id in :orderIds group by i.product.id")
+    List<ProductQuantity> sumQuantitiesByProduct(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("select i.id from OrderItemEntity i where i.product.id = :productId and i.order.status = :status")
+    List<Long> findItemIdsOfProduct(@Param("productId") Long productId, @Param("status") OrderStatus status, Pageable pageable);
+
+    /**
+     * Whether an order in {@code status} holds the product, reads at most one row of the product index.
+     */
+    default boolean existsItemOfProduct(Long productId, OrderStatus status) {
+        return !findItemIdsOfProduct(productId, status, PageRequest.of(0, 1)).isEmpty();
+    }
+
+    /**
+     * Points the items of orders in {@code status} from one product version to another and reprices them.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("update OrderItemEntity i set i.product = :to, i.price = :price " +
+           "where i.product = :from and i.order.id in (select o.id from OrderEntity o where o.status = :status)")
+    int repointItems(@Param("from") ProductEntity from,
+                     @Param("to") ProductEntity to,
+                     @Param("price") BigDecimal price,
+                     @Param("status") OrderStatus status);
+
+    @Query("select i.product.id as productId, o.status as status, sum(i.quantity) as quantity, " +
+           "count(distinct o.id) as orders, sum(i.price * i.quantity) as revenue " +
+           "from OrderItemEntity i join i.order o group by i.product.id, o.status")
+    List<ProductSales> sumSalesByProductAndStatus();
+
+    @Modifying
+    @Query("update OrderEntity o set o.status = :to, o.version = o.version + 1 " +
+           "where o.id in :ids and o.status = :from and o.expiresAt <= :now")
+    int updateExpiredStatus(@Param("ids") Collection<Long> ids, @Param("from") OrderStatus from, @Param("to") OrderStatus to,
+                            @Param("now") LocalDateTime now);
+
+    @Query("select o.id as id, o.expiresAt as expiresAt from OrderEntity o where o.status = :status and o.expiresAt is not null")
+    List<OrderExpiration> findExpirations(@Param("status") OrderStatus status);
+
+    @Query("select o from OrderEntity o " +
+           "where (:status is null or o.status = :status) " +
+           "and (:from is null or o.createdAt >= :from) " +
+           "and (:to is null or o.createdAt < :to) " +
+           "and (:afterCreatedAt is null or o.createdAt < :afterCreatedAt " +
+           "     or (o.createdAt = :afterCreatedAt and o.id < :afterId)) " +
+           "order by o.createdAt desc, o.id desc")
+    List<OrderEntity> findPage(@Param("status") OrderStatus status,
+                               @Param("from") LocalDateTime from,
+                               @Param("to") LocalDateTime to,
+                               @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                               @Param("afterId") Long afterId,
+                               Pageable pageable);
+
+    /**
+     * Items of matching orders as flat rows, newest order first and the items of one order next to
+     * each other. An order without items comes as one row with null item columns.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select o.id as orderId, o.createdAt as createdAt, o.expiresAt as expiresAt, o.status as status, " +
+           "o.version as version, i.id as itemId, p.id as productId, p.name as productName, " +
+           "i.quantity as quantity, i.price as price " +
+           "from OrderEntity o left join o.items i left join i.product p " +
+           "where (:status is null or o.status = :status) " +
+           "and (:from is null or o.createdAt >= :from) " +
+           "and (:to is null or o.createdAt < :to) " +
+           "order by o.createdAt desc, o.id desc, i.id")
+    Stream<OrderItemRow> streamFilteredItemRows(@Param("status") OrderStatus status,
+                                                @Param("from") LocalDateTime from,
+                                                @Param("to") LocalDateTime to);
+
+    /**
+     * Items of matching orders after {@code afterId} as flat rows in order id order, read with a
+     * forward-only cursor. No entity is loaded, so the persistence context stays empty.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select o.id as orderId, o.createdAt as createdAt, o.expiresAt as expiresAt, o.status as status, " +
+           "o.version as version, i.id as itemId, p.id as productId, p.name as productName, " +
+           "i.quantity as quantity, i.price as price " +
+           "from OrderItemEntity i join i.order o join i.product p " +
+           "where o.id > :afterId " +
+           "and (:status is null or o.status = :status) " +
+           "and (:from is null or o.createdAt >= :from) " +
+           "and (:to is null or o.createdAt < :to) " +
+           "order by o.id, i.id")
+    Stream<OrderItemRow> streamItemRows(@Param("status") OrderStatus status,
+                                        @Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to,
+                                        @Param("afterId") long afterId);
+}
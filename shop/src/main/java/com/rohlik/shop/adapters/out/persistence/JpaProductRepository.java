@@ -1,12 +1,35 @@
 package com.rohlik.shop.adapters.out.persistence;
 
 import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.application.service.ProductRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface JpaProductRepository extends JpaRepository<ProductEntity, Long> {
+public interface JpaProductRepository extends JpaRepository<ProductEntity, Long>, ProductRepository, ProductStockAdjustments {
+    // declared by both parents, redeclared so calls on this type are not ambiguous
+    @Override
+    <S extends ProductEntity> S save(S entity);
+
+    @Override
+    Optional<ProductEntity> findById(Long id);
+
     Optional<ProductEntity> findByName(String name);
-} 
\ No newline at end of file
+
+    List<ProductEntity> findByActiveTrue();
+
+    Page<ProductEntity> findByActiveTrue(Pageable pageable);
+
+    // without the active flag, H2 seeks an IN list only on the leading index column
+    List<ProductEntity> findByNameIn(Collection<String> names);
+
+    @Query("select p.id as id, p.stockQuantity as stockQuantity from ProductEntity p where p.active = true")
+    List<StockLevel> findActiveStockLevels();
+}
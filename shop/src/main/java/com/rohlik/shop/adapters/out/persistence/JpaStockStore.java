@@ -0,0 +1,40 @@
+package com.rohlik.shop.adapters.out.persistence;
+
+import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.application.service.ProductRepository;
+import com.rohlik.shop.application.service.StockStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps stock levels in {@link ProductEntity#getStockQuantity()}.
+ */
+@Component
+@ConditionalOnProperty(name = "shop.persistence.stock-store", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaStockStore implements StockStore {
+    private final ProductRepository productRepository;
+
+    @Override
+    public Map<Long, Integer> loadLevels() {
+        Map<Long, Integer> levels = new LinkedHashMap<>();
+        productRepository.findActiveStockLevels()
+            .forEach(level -> levels.put(level.getId(), level.getStockQuantity()));
+        return levels;
+    }
+
+    @Override
+    public Optional<Integer> findLevel(Long productId) {
+        return productRepository.findById(productId).map(ProductEntity::getStockQuantity);
+    }
+
+    @Override
+    public void adjustLevels(Map<Long, Integer> changes) {
+        productRepository.adjustStockQuantities(changes);
+    }
+}
@@ -0,0 +1,11 @@
+package com.rohlik.shop.adapters.out.persistence;
+
+import java.util.Map;
+
+/**
+ * Stock adjustments of many products in one JDBC batch, mixed into {@link JpaProductRepository}.
+ */
+public interface ProductStockAdjustments {
+
+    void adjustStockQuantities(Map<Long, Integer> changes);
+}
@@ -0,0 +1,25 @@
+package com.rohlik.shop.adapters.out.persistence;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class ProductStockAdjustmentsImpl implements ProductStockAdjustments {
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * One statement per product as a single batch, rows are locked in the iteration order of {@code changes}.
+     */
+    @Override
+    @Transactional
+    public void adjustStockQuantities(Map<Long, Integer> changes) {
+        List<Object[]> rows = changes.entrySet().stream()
+            .map(change -> new Object[]{change.getValue(), change.getKey()})
+            .toList();
+        jdbcTemplate.batchUpdate("update product_entity set stock_quantity = stock_quantity + ? where id = ?", rows);
+    }
+}
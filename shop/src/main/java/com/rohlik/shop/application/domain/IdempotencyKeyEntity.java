@@ -0,0 +1,52 @@
+package com.rohlik.shop.application.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency key of an already created order. The key is assigned by the client, so the entity
+ * is always inserted as new and a concurrent duplicate fails on the primary key instead of merging.
+ */
+@Entity
+@Table(name = "idempotency_key", indexes = @Index(name = "idx_idempotency_key_created_at", columnList = "createdAt"))
+@Data
+@NoArgsConstructor
+public class IdempotencyKeyEntity implements Persistable<String> {
+    @Id
+    @Column(length = 100)
+    private String idempotencyKey;
+
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(nullable = false)
+    private Long orderId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public IdempotencyKeyEntity(String idempotencyKey, String requestHash, Long orderId, LocalDateTime createdAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.orderId = orderId;
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
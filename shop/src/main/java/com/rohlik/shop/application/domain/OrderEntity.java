@@ -10,15 +10,21 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Entity
-@Table(name = "shop_order")
+@Table(name = "shop_order", indexes = {
+    @Index(name = "idx_shop_order_status_expires_at", columnList = "status, expiresAt"),
+    @Index(name = "idx_shop_order_created_at_id", columnList = "createdAt, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class OrderEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_id")
+    @SequenceGenerator(name = "order_id", sequenceName = "shop_order_seq", allocationSize = 50)
     private Long id;
 
     @NotNull(message = "Created date is required")
@@ -45,8 +51,8 @@ public class OrderEntity {
         if (status != OrderStatus.PENDING) {
             throw new IllegalStateException("Only pending orders can be cancelled");
         }
+        // Reserved stock is returned through StockReservationLedger once the cancellation commits
         this.status = OrderStatus.CANCELLED;
-        items.forEach(item -> item.getProduct().increaseStock(item.getQuantity()));
     }
 
     public void complete() {
@@ -56,6 +62,11 @@ public class OrderEntity {
         this.status = OrderStatus.COMPLETED;
     }
 
+    public Map<Long, Integer> quantitiesByProduct() {
+        return items.stream()
+            .collect(Collectors.toMap(item -> item.getProduct().getId(), OrderItemEntity::getQuantity, Integer::sum));
+    }
+
     public boolean isExpired() {
         return expiresAt != null && LocalDateTime.now().isAfter(expiresAt);
     }
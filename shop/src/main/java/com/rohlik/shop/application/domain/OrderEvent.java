@@ -0,0 +1,15 @@
+package com.rohlik.shop.application.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * A state transition of an order as published to downstream systems. {@code eventId} grows
+ * with every transition, events of one order are always delivered in {@code eventId} order.
+ */
+public record OrderEvent(
+    Long eventId,
+    Long orderId,
+    OrderEventType type,
+    OrderStatus status,
+    LocalDateTime occurredAt
+) {}
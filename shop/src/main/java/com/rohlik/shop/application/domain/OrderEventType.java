@@ -0,0 +1,9 @@
+package com.rohlik.shop.application.domain;
+
+public enum OrderEventType {
+    CREATED,
+    STATUS_CHANGED,
+    COMPLETED,
+    CANCELLED,
+    EXPIRED
+}
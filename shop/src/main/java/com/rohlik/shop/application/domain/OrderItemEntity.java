@@ -8,12 +8,14 @@ import lombok.AllArgsConstructor;
 import java.math.BigDecimal;
 
 @Entity
+@Table(indexes = @Index(name = "idx_order_item_product_id", columnList = "product_id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class OrderItemEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_id")
+    @SequenceGenerator(name = "order_item_id", sequenceName = "order_item_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -30,12 +32,6 @@ public class OrderItemEntity {
     @Column(nullable = false)
     private BigDecimal price;
 
-    public void validateStock() {
-        if (quantity > product.getStockQuantity()) {
-            throw new IllegalStateException("Insufficient stock for product: " + product.getName());
-        }
-    }
-
     @Override
     public String toString() {
         return "OrderItemEntity{" +
@@ -0,0 +1,43 @@
+package com.rohlik.shop.application.domain;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "order_outbox")
+@Data
+@NoArgsConstructor
+public class OrderOutboxEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_outbox_id")
+    @SequenceGenerator(name = "order_outbox_id", sequenceName = "order_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OrderEventType eventType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OrderStatus orderStatus;
+
+    @Column(nullable = false)
+    private LocalDateTime occurredAt;
+
+    public OrderOutboxEntity(Long orderId, OrderEventType eventType, OrderStatus orderStatus, LocalDateTime occurredAt) {
+        this.orderId = orderId;
+        this.eventType = eventType;
+        this.orderStatus = orderStatus;
+        this.occurredAt = occurredAt;
+    }
+
+    public OrderEvent toEvent() {
+        return new OrderEvent(id, orderId, eventType, orderStatus, occurredAt);
+    }
+}
@@ -8,18 +8,26 @@ import jakarta.validation.constraints.Positive;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_product_active_name", columnList = "active, name"),
+    // imports look products up by a batch of names
+    @Index(name = "idx_product_name", columnList = "name")
+})
+@DynamicUpdate // stockQuantity is written back by StockReservationLedger, catalog updates must not overwrite it
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class ProductEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_id")
+    @SequenceGenerator(name = "product_id", sequenceName = "product_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Name is required")
@@ -45,17 +53,6 @@ public class ProductEntity {
     @Column(nullable = false)
     private boolean active = true;
 
-    public void decreaseStock(int quantity) {
-        if (quantity > stockQuantity) {
-            throw new IllegalStateException("Insufficient stock");
-        }
-        this.stockQuantity -= quantity;
-    }
-
-    public void increaseStock(int quantity) {
-        this.stockQuantity += quantity;
-    }
-
     @Override
     public String toString() {
         return "ProductEntity{" +
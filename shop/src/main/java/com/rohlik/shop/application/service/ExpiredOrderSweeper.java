@@ -0,0 +1,122 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.application.domain.OrderEventType;
+import com.rohlik.shop.application.domain.OrderStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Cancels expired pending orders in bounded chunks, each chunk in its own transaction,
+ * without loading the orders into the persistence context.
+ */
+@Slf4j
+@Component
+public class ExpiredOrderSweeper {
+    private final OrderRepository orderRepository;
+    private final StockReservationLedger stockLedger;
+    private final OrderOutbox orderOutbox;
+    private final SalesAggregates salesAggregates;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    private final Counter expiredOrders;
+    private final Counter failedChunks;
+    private final Timer chunkTimer;
+
+    public ExpiredOrderSweeper(OrderRepository orderRepository,
+                               StockReservationLedger stockLedger,
+                               OrderOutbox orderOutbox,
+                               SalesAggregates salesAggregates,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${shop.orders.expiry-sweep.chunk-size:500}") int chunkSize) {
+        this.orderRepository = orderRepository;
+        this.stockLedger = stockLedger;
+        this.orderOutbox = orderOutbox;
+        this.salesAggregates = salesAggregates;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.expiredOrders = Counter.builder("shop.orders.expired")
+            .description("Pending orders cancelled because they expired")
+            .register(meterRegistry);
+        this.failedChunks = Counter.builder("shop.orders.expiry.chunk.failures")
+            .description("Expiry chunks rolled back because an order changed concurrently")
+            .register(meterRegistry);
+        this.chunkTimer = Timer.builder("shop.orders.expiry.chunk")
+            .description("Time spent cancelling one chunk of expired orders")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedRateString = "${shop.orders.expiry-sweep.interval-ms:60000}",
+               initialDelayString = "${shop.orders.expiry-sweep.interval-ms:60000}")
+    public void sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        int processed;
+        do {
+            try {
+                processed = chunkTimer.record(() -> cancelChunk(now));
+            } catch (OptimisticLockingFailureException ex) {
+                failedChunks.increment();
+                log.warn("Expired order chunk changed concurrently, retrying on next sweep: {}", ex.getMessage());
+                break;
+            }
+            total += processed;
+        } while (processed == chunkSize);
+
+        if (total > 0) {
+            log.info("Cancelled {} expired orders", total);
+        }
+    }
+
+    private int cancelChunk(LocalDateTime now) {
+        Integer cancelled = transactionTemplate.execute(status -> {
+            List<Long> ids = orderRepository.findExpiredIds(OrderStatus.PENDING, now, PageRequest.of(0, chunkSize));
+            return ids.isEmpty() ? 0 : cancelPending(ids, now);
+        });
+        expiredOrders.increment(cancelled);
+        return cancelled;
+    }
+
+    /**
+     * Cancels the given pending orders in one transaction. Fails without changes if any of them
+     * is no longer pending or expires after {@code now}, e.g. because its expiry was extended.
+     */
+    public int cancel(Collection<Long> orderIds, LocalDateTime now) {
+        Integer cancelled = transactionTemplate.execute(status -> cancelPending(orderIds, now));
+        expiredOrders.increment(cancelled);
+        return cancelled;
+    }
+
+    private int cancelPending(Collection<Long> orderIds, LocalDateTime now) {
+        int updated = orderRepository.updateExpiredStatus(orderIds, OrderStatus.PENDING, OrderStatus.CANCELLED, now);
+        if (updated != orderIds.size()) {
+            throw new OptimisticLockingFailureException(
+                (orderIds.size() - updated) + " of " + orderIds.size() + " orders are no longer pending and expired");
+        }
+        // One release per product for the whole chunk instead of one per item
+        List<OrderRepository.ProductQuantity> quantities = orderRepository.sumQuantitiesByProduct(orderIds);
+        Map<Long, Integer> returned = quantities.stream()
+            .collect(Collectors.toMap(OrderRepository.ProductQuantity::getProductId,
+                quantity -> quantity.getQuantity().intValue()));
+        stockLedger.release(returned);
+        salesAggregates.recordExpired(quantities);
+        orderOutbox.recordAll(orderIds, OrderEventType.EXPIRED, OrderStatus.CANCELLED);
+        return updated;
+    }
+}
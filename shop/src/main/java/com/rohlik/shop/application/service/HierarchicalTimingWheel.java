@@ -0,0 +1,166 @@
+package com.rohlik.shop.application.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical timing wheel keyed by an id. Scheduling, rescheduling and cancelling are O(1);
+ * deadlines beyond the first wheel go to lazily created overflow wheels and cascade down as
+ * time advances. Time only moves when {@link #advance(long)} is called, so the wheel can be
+ * driven by a ticker thread or by a test.
+ */
+public class HierarchicalTimingWheel<K> {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private final List<K> overdue = new ArrayList<>();
+    private final Wheel<K> root;
+    private long lastTick;
+
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        this.lastTick = startMs - (startMs % tickMs);
+        this.root = new Wheel<>(tickMs, wheelSize, lastTick);
+    }
+
+    public void schedule(K key, long deadlineMs) {
+        lock.lock();
+        try {
+            remove(key);
+            // Round up to the next tick so that keys never fire before their deadline
+            long dueMs = Math.floorDiv(deadlineMs + root.tickMs - 1, root.tickMs) * root.tickMs;
+            Entry<K> entry = new Entry<>(key, dueMs);
+            entries.put(key, entry);
+            if (!root.add(entry)) {
+                entries.remove(key);
+                overdue.add(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void cancel(K key) {
+        lock.lock();
+        try {
+            remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves the clock to {@code nowMs} and returns the keys whose deadline has passed.
+     */
+    public List<K> advance(long nowMs) {
+        List<K> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            expired.addAll(overdue);
+            overdue.clear();
+            while (lastTick + root.tickMs <= nowMs) {
+                lastTick += root.tickMs;
+                tick(lastTick, expired);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return expired;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size() + overdue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void tick(long time, List<K> expired) {
+        for (Wheel<K> wheel = root; wheel != null; wheel = wheel.overflow) {
+            wheel.advanceClock(time);
+        }
+        // A slot of an outer wheel is due only when time is a multiple of its tick, which implies it for all inner wheels
+        for (Wheel<K> wheel = root; wheel != null && time % wheel.tickMs == 0; wheel = wheel.overflow) {
+            for (Entry<K> entry : wheel.drain(time)) {
+                if (!root.add(entry)) {
+                    entries.remove(entry.key);
+                    expired.add(entry.key);
+                }
+            }
+        }
+    }
+
+    private void remove(K key) {
+        Entry<K> existing = entries.remove(key);
+        if (existing != null && existing.bucket != null) {
+            existing.bucket.remove(existing);
+        }
+        overdue.remove(key);
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private final long dueMs;
+        private Set<Entry<K>> bucket;
+
+        private Entry(K key, long dueMs) {
+            this.key = key;
+            this.dueMs = dueMs;
+        }
+    }
+
+    private static final class Wheel<K> {
+        private final long tickMs;
+        private final int size;
+        private final long interval;
+        private final List<Set<Entry<K>>> buckets;
+        private long currentTime;
+        private Wheel<K> overflow;
+
+        private Wheel(long tickMs, int size, long startMs) {
+            this.tickMs = tickMs;
+            this.size = size;
+            this.interval = tickMs * size;
+            this.currentTime = startMs - (startMs % tickMs);
+            this.buckets = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                buckets.add(new LinkedHashSet<>());
+            }
+        }
+
+        private boolean add(Entry<K> entry) {
+            if (entry.dueMs < currentTime + tickMs) {
+                entry.bucket = null;
+                return false;
+            }
+            if (entry.dueMs < currentTime + interval) {
+                Set<Entry<K>> bucket = buckets.get((int) ((entry.dueMs / tickMs) % size));
+                bucket.add(entry);
+                entry.bucket = bucket;
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Wheel<>(interval, size, currentTime);
+            }
+            return overflow.add(entry);
+        }
+
+        private void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+            }
+        }
+
+        private List<Entry<K>> drain(long timeMs) {
+            Set<Entry<K>> bucket = buckets.get((int) ((timeMs / tickMs) % size));
+            List<Entry<K>> drained = new ArrayList<>(bucket);
+            bucket.clear();
+            return drained;
+        }
+    }
+}
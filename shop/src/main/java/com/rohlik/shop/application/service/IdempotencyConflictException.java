@@ -0,0 +1,10 @@
+package com.rohlik.shop.application.service;
+
+/**
+ * An idempotency key was reused for a different request, or its first request is still running.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.application.domain.IdempotencyKeyEntity;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Where {@link IdempotentOrderService} remembers the requests it already answered. Implemented by
+ * the Spring Data repository only: a key has to be inserted and flushed in the transaction that
+ * creates the order so the primary key rejects a concurrent duplicate, and keys expire after the
+ * retention period anyway.
+ */
+public interface IdempotencyKeyRepository {
+
+    <S extends IdempotencyKeyEntity> S saveAndFlush(S key);
+
+    Optional<IdempotencyKeyEntity> findById(String idempotencyKey);
+
+    int deleteCreatedBefore(LocalDateTime cutoff);
+}
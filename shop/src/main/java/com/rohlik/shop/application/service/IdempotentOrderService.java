@@ -0,0 +1,174 @@
+package com.rohlik.shop.application.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.application.domain.IdempotencyKeyEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Creates an order at most once per client supplied idempotency key. Completed keys are answered
+ * from a bounded in-memory cache backed by the idempotency_key table, which is written in the
+ * same transaction as the order. A duplicate arriving while the first request is still running
+ * waits for its result instead of creating a second order.
+ */
+@Slf4j
+@Service
+public class IdempotentOrderService {
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final OrderService orderService;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+    private final Duration waitTimeout;
+
+    private final Cache<String, CompletedRequest> completed;
+    private final ConcurrentMap<String, CompletableFuture<CompletedRequest>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotentOrderService(OrderService orderService,
+                                  IdempotencyKeyRepository idempotencyKeyRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${shop.orders.idempotency.retention:24h}") Duration retention,
+                                  @Value("${shop.orders.idempotency.cache-size:10000}") long cacheSize,
+                                  @Value("${shop.orders.idempotency.wait-timeout:10s}") Duration waitTimeout) {
+        this.orderService = orderService;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.waitTimeout = waitTimeout;
+        this.completed = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterWrite(retention)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "orders.idempotency-keys");
+    }
+
+    public OrderDTO createOrder(String idempotencyKey, OrderDTO orderDTO) {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key must have between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = requestHash(orderDTO);
+
+        CompletedRequest done = completed.getIfPresent(idempotencyKey);
+        if (done != null) {
+            return done.replay(idempotencyKey, requestHash);
+        }
+
+        CompletableFuture<CompletedRequest> own = new CompletableFuture<>();
+        CompletableFuture<CompletedRequest> running = inFlight.putIfAbsent(idempotencyKey, own);
+        if (running != null) {
+            return await(idempotencyKey, running).replay(idempotencyKey, requestHash);
+        }
+        try {
+            CompletedRequest result = execute(idempotencyKey, requestHash, orderDTO);
+            completed.put(idempotencyKey, result);
+            own.complete(result);
+            return result.replay(idempotencyKey, requestHash);
+        } catch (RuntimeException ex) {
+            // Failures are not remembered, a retry with the same key runs again
+            own.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(idempotencyKey, own);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shop.orders.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpiredKeys() {
+        int purged = idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private CompletedRequest execute(String idempotencyKey, String requestHash, OrderDTO orderDTO) {
+        CompletedRequest stored = findStored(idempotencyKey);
+        if (stored != null) {
+            return stored;
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                OrderDTO order = orderService.createOrder(orderDTO);
+                idempotencyKeyRepository.saveAndFlush(
+                    new IdempotencyKeyEntity(idempotencyKey, requestHash, order.id(), LocalDateTime.now()));
+                return new CompletedRequest(requestHash, order);
+            });
+        } catch (DataIntegrityViolationException ex) {
+            // Another instance stored the key first, our order was rolled back with the key
+            stored = findStored(idempotencyKey);
+            if (stored == null) {
+                throw ex;
+            }
+            return stored;
+        }
+    }
+
+    private CompletedRequest findStored(String idempotencyKey) {
+        return idempotencyKeyRepository.findById(idempotencyKey)
+            .map(key -> new CompletedRequest(key.getRequestHash(), orderService.getOrderById(key.getOrderId())))
+            .orElse(null);
+    }
+
+    private CompletedRequest await(String idempotencyKey, CompletableFuture<CompletedRequest> running) {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new IdempotencyConflictException("Request with idempotency key " + idempotencyKey + " is still being processed");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Request with idempotency key " + idempotencyKey + " is still being processed");
+        }
+    }
+
+    private static String requestHash(OrderDTO orderDTO) {
+        String items = orderDTO.items() == null ? "" : orderDTO.items().stream()
+            .map(item -> item.productId() + ":" + item.quantity())
+            .sorted()
+            .collect(Collectors.joining(","));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(items.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private record CompletedRequest(String requestHash, OrderDTO order) {
+        OrderDTO replay(String idempotencyKey, String requestHash) {
+            if (!this.requestHash.equals(requestHash)) {
+                throw new IdempotencyConflictException("Idempotency key " + idempotencyKey + " was already used for a different order");
+            }
+            return order;
+        }
+    }
+}
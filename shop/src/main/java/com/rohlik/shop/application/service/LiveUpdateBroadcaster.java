@@ -0,0 +1,179 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.LiveUpdateDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fans order status and stock changes out to live subscribers. Publishing never blocks: every
+ * subscriber has a bounded buffer drained by its own writer thread, so a client whose connection
+ * stalls only ever holds its own thread. A subscriber whose buffer is full is disconnected
+ * instead of letting it hold memory. Clients are expected to reconnect and reload what they show.
+ */
+@Slf4j
+@Component
+public class LiveUpdateBroadcaster {
+    private final Set<Subscription> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    // one permit per subscriber, so concurrent subscribes cannot overshoot the limit
+    private final Semaphore slots;
+    private final int bufferSize;
+
+    private final Counter delivered;
+    private final Counter disconnected;
+
+    public LiveUpdateBroadcaster(MeterRegistry meterRegistry,
+                                 @Value("${shop.live-updates.buffer-size:256}") int bufferSize,
+                                 @Value("${shop.live-updates.max-subscribers:100}") int maxSubscribers) {
+        this.bufferSize = bufferSize;
+        this.slots = new Semaphore(maxSubscribers);
+        this.delivered = Counter.builder("shop.live-updates.delivered")
+            .description("Updates written to live subscribers")
+            .register(meterRegistry);
+        this.disconnected = Counter.builder("shop.live-updates.disconnected")
+            .description("Live subscribers dropped because they could not keep up")
+            .register(meterRegistry);
+        Gauge.builder("shop.live-updates.subscribers", subscribers, Set::size)
+            .description("Connected live subscribers")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Registers a subscriber. {@code consumer} is called from the subscriber's writer thread, one
+     * update at a time; {@code onOverflow} is called once from the same thread when the subscriber
+     * is dropped for being slow, after the write it was stuck in has returned.
+     *
+     * @throws RejectedExecutionException when the subscriber limit is reached
+     */
+    public Subscription subscribe(Consumer<LiveUpdateDTO> consumer, Runnable onOverflow) {
+        if (!slots.tryAcquire()) {
+            throw new RejectedExecutionException("Too many live update subscribers, try again later");
+        }
+        Subscription subscription = new Subscription(consumer, onOverflow);
+        subscribers.add(subscription);
+        try {
+            subscription.writer.start();
+        } catch (RuntimeException | Error ex) {
+            subscription.close();
+            throw ex;
+        }
+        return subscription;
+    }
+
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    public void publish(LiveUpdateDTO update) {
+        for (Subscription subscription : subscribers) {
+            subscription.offer(update);
+        }
+    }
+
+    /**
+     * Publishes the updates once the current transaction commits, right away outside of one.
+     */
+    public void publishAfterCommit(List<LiveUpdateDTO> updates) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    updates.forEach(LiveUpdateBroadcaster.this::publish);
+                }
+            });
+        } else {
+            updates.forEach(this::publish);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(Subscription::close);
+    }
+
+    public final class Subscription implements AutoCloseable {
+        private final BlockingQueue<LiveUpdateDTO> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final Consumer<LiveUpdateDTO> consumer;
+        private final Runnable onOverflow;
+        private final Thread writer;
+        private volatile boolean closed;
+        private volatile boolean overflowed;
+
+        private Subscription(Consumer<LiveUpdateDTO> consumer, Runnable onOverflow) {
+            this.consumer = consumer;
+            this.onOverflow = onOverflow;
+            this.writer = new Thread(this::write, "live-updates-" + threadNumber.incrementAndGet());
+            this.writer.setDaemon(true);
+        }
+
+        private void offer(LiveUpdateDTO update) {
+            if (closed) {
+                return;
+            }
+            if (!buffer.offer(update)) {
+                disconnected.increment();
+                log.info("Live update subscriber fell {} updates behind, disconnecting it", bufferSize);
+                overflowed = true;
+                close();
+            }
+        }
+
+        private void write() {
+            try {
+                while (!closed) {
+                    LiveUpdateDTO update = buffer.take();
+                    consumer.accept(update);
+                    delivered.increment();
+                }
+            } catch (InterruptedException ex) {
+                // closed while waiting for the next update
+            } catch (RuntimeException ex) {
+                log.debug("Live update subscriber failed, dropping it: {}", ex.getMessage());
+                close();
+            }
+            if (overflowed) {
+                // the interrupt from close() is meant for the loop, not for the callback
+                Thread.interrupted();
+                try {
+                    onOverflow.run();
+                } catch (RuntimeException ex) {
+                    log.debug("Disconnecting a slow live update subscriber failed: {}", ex.getMessage());
+                }
+            }
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            if (subscribers.remove(this)) {
+                slots.release();
+            }
+            buffer.clear();
+            writer.interrupt();
+        }
+    }
+}
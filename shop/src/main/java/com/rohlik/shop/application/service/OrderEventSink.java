@@ -0,0 +1,13 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.application.domain.OrderEvent;
+
+import java.util.List;
+
+/**
+ * Destination of the order outbox. Events arrive in outbox order; a batch counts as delivered
+ * only when this returns normally, so an implementation may see a batch again after a failure.
+ */
+public interface OrderEventSink {
+    void publish(List<OrderEvent> events);
+}
@@ -0,0 +1,131 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.application.domain.OrderStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires the cancellation of a pending order close to its exact {@code expiresAt} using a
+ * hierarchical timing wheel. {@link ExpiredOrderSweeper} stays in place as a safety net.
+ */
+@Slf4j
+@Component
+public class OrderExpiryScheduler {
+    private final OrderRepository orderRepository;
+    private final ExpiredOrderSweeper expiredOrderSweeper;
+    private final HierarchicalTimingWheel<Long> wheel;
+    private final long tickMs;
+    private final int chunkSize;
+    private ScheduledExecutorService ticker;
+
+    public OrderExpiryScheduler(OrderRepository orderRepository,
+                                ExpiredOrderSweeper expiredOrderSweeper,
+                                @Value("${shop.orders.expiry-wheel.tick-ms:100}") long tickMs,
+                                @Value("${shop.orders.expiry-wheel.size:512}") int wheelSize,
+                                @Value("${shop.orders.expiry-sweep.chunk-size:500}") int chunkSize) {
+        this.orderRepository = orderRepository;
+        this.expiredOrderSweeper = expiredOrderSweeper;
+        this.tickMs = tickMs;
+        this.chunkSize = chunkSize;
+        this.wheel = new HierarchicalTimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<OrderRepository.OrderExpiration> pending = orderRepository.findExpirations(OrderStatus.PENDING);
+        pending.forEach(order -> wheel.schedule(order.getId(), toEpochMillis(order.getExpiresAt())));
+        log.info("Order expiry wheel rehydrated with {} pending orders", pending.size());
+
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-expiry-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Schedules or reschedules an order once the current transaction commits.
+     */
+    public void schedule(Long orderId, LocalDateTime expiresAt) {
+        if (expiresAt == null) {
+            afterCommit(() -> wheel.cancel(orderId));
+        } else {
+            afterCommit(() -> wheel.schedule(orderId, toEpochMillis(expiresAt)));
+        }
+    }
+
+    public void unschedule(Long orderId) {
+        afterCommit(() -> wheel.cancel(orderId));
+    }
+
+    public int scheduledOrders() {
+        return wheel.size();
+    }
+
+    void tick() {
+        List<Long> expired = wheel.advance(System.currentTimeMillis());
+        LocalDateTime now = LocalDateTime.now();
+        // Bounded transactions like the sweeper's, a restart can make thousands of orders overdue at once
+        for (int from = 0; from < expired.size(); from += chunkSize) {
+            cancelChunk(expired.subList(from, Math.min(from + chunkSize, expired.size())), now);
+        }
+    }
+
+    private void cancelChunk(List<Long> chunk, LocalDateTime now) {
+        try {
+            expiredOrderSweeper.cancel(chunk, now);
+        } catch (OptimisticLockingFailureException ex) {
+            // Some of the orders were completed, cancelled or extended meanwhile, cancel the rest one by one
+            chunk.forEach(orderId -> cancelIfExpired(orderId, now));
+        } catch (RuntimeException ex) {
+            log.error("Failed to cancel expired orders {}, leaving them to the sweeper", chunk, ex);
+        }
+    }
+
+    private void cancelIfExpired(Long orderId, LocalDateTime now) {
+        try {
+            expiredOrderSweeper.cancel(List.of(orderId), now);
+        } catch (OptimisticLockingFailureException ignored) {
+            // no longer pending or no longer expired
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,46 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.LiveUpdateDTO;
+import com.rohlik.shop.application.domain.OrderEventType;
+import com.rohlik.shop.application.domain.OrderOutboxEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Records order transitions in the outbox table as part of the transaction that makes them,
+ * {@link OrderOutboxRelay} publishes them once committed. Live subscribers get the new status
+ * straight after the commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderOutbox {
+    private final OrderOutboxRepository outboxRepository;
+    private final LiveUpdateBroadcaster liveUpdates;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long orderId, OrderEventType type, OrderStatus status) {
+        outboxRepository.save(new OrderOutboxEntity(orderId, type, status, LocalDateTime.now()));
+        liveUpdates.publishAfterCommit(List.of(LiveUpdateDTO.orderStatus(orderId, status)));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(Collection<Long> orderIds, OrderEventType type, OrderStatus status) {
+        LocalDateTime now = LocalDateTime.now();
+        outboxRepository.saveAll(orderIds.stream()
+            .map(orderId -> new OrderOutboxEntity(orderId, type, status, now))
+            .collect(Collectors.toList()));
+        if (liveUpdates.hasSubscribers()) {
+            liveUpdates.publishAfterCommit(orderIds.stream()
+                .map(orderId -> LiveUpdateDTO.orderStatus(orderId, status))
+                .collect(Collectors.toList()));
+        }
+    }
+}
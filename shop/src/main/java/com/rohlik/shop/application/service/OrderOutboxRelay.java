@@ -0,0 +1,77 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.application.domain.OrderEvent;
+import com.rohlik.shop.application.domain.OrderOutboxEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the order outbox in id order to the configured {@link OrderEventSink}, at least once.
+ * A batch is deleted only after the sink accepted it; when the sink fails the relay stops and
+ * the same batch is retried on the next run, so later events never overtake earlier ones.
+ */
+@Slf4j
+@Component
+public class OrderOutboxRelay {
+    private final OrderOutboxRepository outboxRepository;
+    private final OrderEventSink sink;
+    private final int batchSize;
+    private final ReentrantLock draining = new ReentrantLock();
+
+    private final Counter published;
+    private final Counter failures;
+
+    public OrderOutboxRelay(OrderOutboxRepository outboxRepository,
+                            OrderEventSink sink,
+                            MeterRegistry meterRegistry,
+                            @Value("${shop.outbox.batch-size:200}") int batchSize) {
+        this.outboxRepository = outboxRepository;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.published = Counter.builder("shop.outbox.published")
+            .description("Order events delivered to the sink")
+            .register(meterRegistry);
+        this.failures = Counter.builder("shop.outbox.failures")
+            .description("Outbox batches the sink rejected")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${shop.outbox.relay-interval-ms:1000}")
+    public void relay() {
+        if (!draining.tryLock()) {
+            return;
+        }
+        try {
+            int delivered;
+            do {
+                delivered = relayBatch();
+            } while (delivered == batchSize);
+        } catch (RuntimeException ex) {
+            failures.increment();
+            log.warn("Publishing order events failed, retrying on next run", ex);
+        } finally {
+            draining.unlock();
+        }
+    }
+
+    private int relayBatch() {
+        List<OrderOutboxEntity> batch = outboxRepository.findOldest(PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<OrderEvent> events = batch.stream().map(OrderOutboxEntity::toEvent).collect(Collectors.toList());
+        sink.publish(events);
+        outboxRepository.deleteAllByIdInBatch(events.stream().map(OrderEvent::eventId).collect(Collectors.toList()));
+        published.increment(events.size());
+        return events.size();
+    }
+}
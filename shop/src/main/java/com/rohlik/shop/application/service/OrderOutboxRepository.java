@@ -0,0 +1,23 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.application.domain.OrderOutboxEntity;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * Where {@link OrderOutbox} records order events until {@link OrderOutboxRelay} publishes them.
+ * Implemented by the Spring Data repository only: the outbox must commit with the order
+ * transition it describes, and the relay empties it within seconds, so there is nothing worth
+ * journaling next to the order store.
+ */
+public interface OrderOutboxRepository {
+
+    <S extends OrderOutboxEntity> S save(S event);
+
+    <S extends OrderOutboxEntity> List<S> saveAll(Iterable<S> events);
+
+    List<OrderOutboxEntity> findOldest(Pageable pageable);
+
+    void deleteAllByIdInBatch(Iterable<Long> ids);
+}
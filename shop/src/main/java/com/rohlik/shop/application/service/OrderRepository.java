@@ -0,0 +1,101 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Where the services keep orders. Implemented by the Spring Data repository and, with
+ * {@code shop.persistence.order-store=log}, by an adapter that also journals every write so
+ * orders survive restarts of an in-memory database.
+ */
+public interface OrderRepository {
+
+    <S extends OrderEntity> S save(S order);
+
+    <S extends OrderEntity> List<S> saveAll(Iterable<S> orders);
+
+    Optional<OrderEntity> findById(Long id);
+
+    long count();
+
+    List<OrderEntity> findAllWithItems();
+
+    Optional<OrderEntity> findWithItemsById(Long id);
+
+    /**
+     * Keyset page of matching orders, newest first, after the order at {@code afterCreatedAt} and {@code afterId}.
+     */
+    List<OrderEntity> findPage(OrderStatus status, LocalDateTime from, LocalDateTime to,
+                               LocalDateTime afterCreatedAt, Long afterId, Pageable pageable);
+
+    /**
+     * Items of matching orders as flat rows, newest order first and the items of one order next to each other.
+     */
+    Stream<OrderItemRow> streamFilteredItemRows(OrderStatus status, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Items of matching orders after {@code afterId} as flat rows in order id order.
+     */
+    Stream<OrderItemRow> streamItemRows(OrderStatus status, LocalDateTime from, LocalDateTime to, long afterId);
+
+    List<Long> findExpiredIds(OrderStatus status, LocalDateTime now, Pageable pageable);
+
+    List<OrderExpiration> findExpirations(OrderStatus status);
+
+    /**
+     * Moves the given orders from {@code from} to {@code to} if they expired by {@code now}, returns how many moved.
+     */
+    int updateExpiredStatus(Collection<Long> ids, OrderStatus from, OrderStatus to, LocalDateTime now);
+
+    List<ProductQuantity> sumQuantitiesByProduct(Collection<Long> orderIds);
+
+    List<ProductSales> sumSalesByProductAndStatus();
+
+    boolean existsItemOfProduct(Long productId, OrderStatus status);
+
+    /**
+     * Points the items of orders in {@code status} from one product version to another and reprices them.
+     */
+    int repointItems(ProductEntity from, ProductEntity to, BigDecimal price, OrderStatus status);
+
+    interface ProductQuantity {
+        Long getProductId();
+        Long getQuantity();
+        Long getOrders();
+    }
+
+    interface ProductSales {
+        Long getProductId();
+        OrderStatus getStatus();
+        Long getQuantity();
+        Long getOrders();
+        BigDecimal getRevenue();
+    }
+
+    interface OrderExpiration {
+        Long getId();
+        LocalDateTime getExpiresAt();
+    }
+
+    interface OrderItemRow {
+        Long getOrderId();
+        LocalDateTime getCreatedAt();
+        LocalDateTime getExpiresAt();
+        OrderStatus getStatus();
+        Long getVersion();
+        Long getItemId();
+        Long getProductId();
+        String getProductName();
+        Integer getQuantity();
+        BigDecimal getPrice();
+    }
+}
@@ -1,70 +1,246 @@
 package com.rohlik.shop.application.service;
 
-import com.rohlik.shop.adapters.out.persistence.JpaOrderRepository;
-import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
 import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderEventType;
 import com.rohlik.shop.application.domain.OrderItemEntity;
 import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.adapters.in.web.dto.OrderBatchResultDTO;
 import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderFilterDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderPageDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderItemDTO;
 import com.rohlik.shop.adapters.in.web.mapper.OrderMapper;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.crossstore.ChangeSetPersister;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
-    private final JpaOrderRepository orderRepository;
-    private final JpaProductRepository productRepository;
+    private final OrderRepository orderRepository;
+    private final ProductRepository productRepository;
     private final OrderMapper orderMapper;
+    private final StockReservationLedger stockLedger;
+    private final OrderExpiryScheduler expiryScheduler;
+    private final OrderOutbox orderOutbox;
+    private final SalesAggregates salesAggregates;
+
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_BATCH_SIZE = 1000;
 
     @Transactional
     public OrderDTO createOrder(OrderDTO orderDTO) {
-        OrderEntity orderEntity = orderMapper.toEntity(orderDTO);
-        // Validate stock for all items
-        orderEntity.getItems().forEach(OrderItemEntity::validateStock);
+        Map<Long, ProductEntity> products = loadProducts(List.of(orderDTO));
+        OrderEntity orderEntity = newPendingOrder(orderDTO, productId -> Optional.ofNullable(products.get(productId)));
+
+        // Reserve stock for all items, the ledger writes the new levels back to the products
+        stockLedger.reserve(orderEntity.quantitiesByProduct());
         
+        OrderEntity savedOrder = orderRepository.save(orderEntity);
+        orderOutbox.record(savedOrder.getId(), OrderEventType.CREATED, savedOrder.getStatus());
+        salesAggregates.recordTransition(savedOrder, null);
+        expiryScheduler.schedule(savedOrder.getId(), savedOrder.getExpiresAt());
+        return orderMapper.toDTO(savedOrder);
+    }
+
+    /**
+     * Creates many orders in one transaction. Products of all orders are loaded with a single query
+     * and a rejected order (unknown product, insufficient stock, busy product, ...) does not affect the others.
+     */
+    @Transactional
+    public List<OrderBatchResultDTO> createOrders(List<OrderDTO> orderDTOs) {
+        if (orderDTOs == null || orderDTOs.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one order");
+        }
+        if (orderDTOs.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch must not contain more than " + MAX_BATCH_SIZE + " orders");
+        }
+
+        Map<Long, ProductEntity> products = loadProducts(orderDTOs);
+
+        OrderEntity[] accepted = new OrderEntity[orderDTOs.size()];
+        String[] errors = new String[orderDTOs.size()];
+        for (int i = 0; i < orderDTOs.size(); i++) {
+            try {
+                OrderEntity orderEntity = newPendingOrder(orderDTOs.get(i), productId -> Optional.ofNullable(products.get(productId)));
+                stockLedger.reserve(orderEntity.quantitiesByProduct());
+                accepted[i] = orderEntity;
+            } catch (IllegalArgumentException | IllegalStateException | StockLockTimeoutException ex) {
+                // a busy product only fails the orders containing it
+                errors[i] = ex.getMessage();
+            }
+        }
+
+        // One flush for the whole batch, inserts are grouped into JDBC batches
+        List<OrderEntity> saved = orderRepository.saveAll(Arrays.stream(accepted).filter(Objects::nonNull).collect(Collectors.toList()));
+        orderOutbox.recordAll(saved.stream().map(OrderEntity::getId).collect(Collectors.toList()),
+            OrderEventType.CREATED, OrderStatus.PENDING);
+        saved.forEach(order -> salesAggregates.recordTransition(order, null));
+
+        List<OrderBatchResultDTO> results = new ArrayList<>(orderDTOs.size());
+        for (int i = 0; i < orderDTOs.size(); i++) {
+            if (accepted[i] != null) {
+                expiryScheduler.schedule(accepted[i].getId(), accepted[i].getExpiresAt());
+                results.add(OrderBatchResultDTO.created(i, orderMapper.toDTO(accepted[i])));
+            } else {
+                results.add(OrderBatchResultDTO.rejected(i, errors[i]));
+            }
+        }
+        return results;
+    }
+
+    private Map<Long, ProductEntity> loadProducts(List<OrderDTO> orderDTOs) {
+        Set<Long> productIds = orderDTOs.stream()
+            .filter(orderDTO -> orderDTO.items() != null)
+            .flatMap(orderDTO -> orderDTO.items().stream())
+            .map(OrderItemDTO::productId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+        return productRepository.findAllById(productIds).stream()
+            .collect(Collectors.toMap(ProductEntity::getId, Function.identity()));
+    }
+
+    private OrderEntity newPendingOrder(OrderDTO orderDTO, Function<Long, Optional<ProductEntity>> products) {
+        if (orderDTO.items() == null || orderDTO.items().isEmpty()) {
+            throw new IllegalArgumentException("Order must contain at least one item");
+        }
+        OrderEntity orderEntity = orderMapper.toEntity(orderDTO);
+        orderDTO.items().forEach(itemDTO -> orderEntity.addItem(toOrderItem(itemDTO, products)));
+
         // Set creation and expiration time
         orderEntity.setCreatedAt(LocalDateTime.now());
         orderEntity.setExpiresAt(LocalDateTime.now().plusMinutes(30));
         orderEntity.setStatus(OrderStatus.PENDING);
-        
-        // Decrease stock for all items
-        orderEntity.getItems().forEach(item ->
-            item.getProduct().decreaseStock(item.getQuantity())
-        );
-        
-        OrderEntity savedOrder = orderRepository.save(orderEntity);
-        return orderMapper.toDTO(savedOrder);
+        return orderEntity;
+    }
+
+    private OrderItemEntity toOrderItem(OrderItemDTO itemDTO, Function<Long, Optional<ProductEntity>> products) {
+        if (itemDTO.quantity() == null || itemDTO.quantity() < 1) {
+            throw new IllegalArgumentException("Quantity must be positive for product with id: " + itemDTO.productId());
+        }
+        ProductEntity product = Optional.ofNullable(itemDTO.productId()).flatMap(products)
+            .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + itemDTO.productId()));
+        OrderItemEntity item = new OrderItemEntity();
+        item.setProduct(product);
+        item.setQuantity(itemDTO.quantity());
+        item.setPrice(product.getPrice());
+        return item;
     }
 
+    @Transactional(readOnly = true)
     public List<OrderDTO> getAllOrders() {
-        List<OrderEntity> all = orderRepository.findAll();
+        List<OrderEntity> all = orderRepository.findAllWithItems();
         return all.stream()
             .map(orderMapper::toDTO)
             .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public OrderPageDTO getOrdersPage(OrderFilterDTO filter, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        OrderCursor after = cursor == null || cursor.isBlank() ? OrderCursor.START : OrderCursor.decode(cursor);
+
+        // One extra row tells whether there is a next page without a count query
+        List<OrderEntity> page = orderRepository.findPage(filter.status(), filter.from(), filter.to(),
+            after.createdAt(), after.id(), PageRequest.of(0, limit + 1));
+        boolean hasMore = page.size() > limit;
+        List<OrderEntity> orders = hasMore ? page.subList(0, limit) : page;
+
+        String nextCursor = hasMore ? OrderCursor.of(orders.get(orders.size() - 1)).encode() : null;
+        return new OrderPageDTO(orders.stream().map(orderMapper::toDTO).collect(Collectors.toList()), nextCursor);
+    }
+
+    /**
+     * Walks all matching orders with a database cursor over flat item rows, one order in memory
+     * at a time, so that memory stays constant regardless of the table size.
+     */
+    @Transactional(readOnly = true)
+    public void streamOrders(OrderFilterDTO filter, Consumer<OrderDTO> consumer) {
+        try (Stream<OrderRepository.OrderItemRow> rows = orderRepository.streamFilteredItemRows(
+                filter.status(), filter.from(), filter.to())) {
+            groupByOrder(rows, consumer);
+        }
+    }
+
+    /**
+     * Export variant of {@link #streamOrders}: orders after {@code afterId} in id order, built from
+     * flat item rows of a forward-only cursor, one order in memory at a time. A client that lost
+     * the connection resumes with the id of the last order it received completely.
+     */
+    @Transactional(readOnly = true)
+    public void exportOrders(OrderFilterDTO filter, Long afterId, Consumer<OrderDTO> consumer) {
+        try (Stream<OrderRepository.OrderItemRow> rows = orderRepository.streamItemRows(
+                filter.status(), filter.from(), filter.to(), afterId != null ? afterId : 0L)) {
+            groupByOrder(rows, consumer);
+        }
+    }
+
+    private static void groupByOrder(Stream<OrderRepository.OrderItemRow> rows, Consumer<OrderDTO> consumer) {
+        OrderDTO[] current = {null};
+        rows.forEach(row -> {
+            if (current[0] != null && !current[0].id().equals(row.getOrderId())) {
+                consumer.accept(current[0]);
+                current[0] = null;
+            }
+            if (current[0] == null) {
+                current[0] = new OrderDTO(row.getOrderId(), row.getCreatedAt(), row.getExpiresAt(),
+                    row.getStatus(), new ArrayList<>(), row.getVersion());
+            }
+            if (row.getItemId() != null) {
+                current[0].items().add(new OrderItemDTO(row.getItemId(), row.getProductId(), row.getProductName(),
+                    row.getQuantity(), row.getPrice()));
+            }
+        });
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+    }
+
+    @Transactional(readOnly = true)
     public OrderDTO getOrderById(Long id) throws EntityNotFoundException {
-        return orderRepository.findById(id)
+        return orderRepository.findWithItemsById(id)
             .map(orderMapper::toDTO).orElseThrow(EntityNotFoundException::new);
     }
 
+    /**
+     * Moves an order to the given status through the same transition as {@link #cancelOrder} or
+     * {@link #completeOrder}, so stock, outbox and aggregates follow. Orders cannot go back to pending.
+     */
     @Transactional
     public OrderDTO updateOrderStatus(Long id, OrderStatus status) {
         OrderEntity order = orderRepository.findById(id)
             .orElseThrow(() -> new IllegalArgumentException("Order not found with id: " + id));
-        order.setStatus(status);
-        OrderEntity savedOrder = orderRepository.save(order);
-        return orderMapper.toDTO(savedOrder);
+        switch (status) {
+            case CANCELLED -> cancel(order);
+            case COMPLETED -> complete(order);
+            case PENDING -> {
+                if (order.getStatus() != OrderStatus.PENDING) {
+                    throw new IllegalStateException("Only pending orders can stay pending");
+                }
+            }
+        }
+        return orderMapper.toDTO(order);
     }
 
     @Transactional
@@ -91,34 +267,60 @@ public class OrderService {
             .orElseThrow(() -> new IllegalArgumentException("Order not found with id: " + orderId));
         order.setExpiresAt(newExpiration);
         OrderEntity savedOrder = orderRepository.save(order);
+        if (savedOrder.getStatus() == OrderStatus.PENDING) {
+            expiryScheduler.schedule(savedOrder.getId(), savedOrder.getExpiresAt());
+        }
         return orderMapper.toDTO(savedOrder);
     }
 
     @Transactional
     public void cancelOrder(Long id) {
-        OrderEntity orderEntity = orderRepository.findById(id)
-            .orElseThrow(() -> new IllegalArgumentException("Order not found with id: " + id));
-        orderEntity.cancel();
-        orderRepository.save(orderEntity);
+        cancel(orderRepository.findById(id)
+            .orElseThrow(() -> new IllegalArgumentException("Order not found with id: " + id)));
     }
 
     @Transactional
     public void completeOrder(Long id) {
-        OrderEntity orderEntity = orderRepository.findById(id)
-            .orElseThrow(() -> new IllegalArgumentException("Order not found with id: " + id));
+        complete(orderRepository.findById(id)
+            .orElseThrow(() -> new IllegalArgumentException("Order not found with id: " + id)));
+    }
+
+    private void cancel(OrderEntity orderEntity) {
+        orderEntity.cancel();
+        orderRepository.save(orderEntity);
+        orderOutbox.record(orderEntity.getId(), OrderEventType.CANCELLED, orderEntity.getStatus());
+        salesAggregates.recordTransition(orderEntity, OrderStatus.PENDING);
+        stockLedger.release(orderEntity.quantitiesByProduct());
+        expiryScheduler.unschedule(orderEntity.getId());
+    }
+
+    private void complete(OrderEntity orderEntity) {
         orderEntity.complete();
         orderRepository.save(orderEntity);
+        orderOutbox.record(orderEntity.getId(), OrderEventType.COMPLETED, orderEntity.getStatus());
+        salesAggregates.recordTransition(orderEntity, OrderStatus.PENDING);
+        expiryScheduler.unschedule(orderEntity.getId());
     }
 
-    @Scheduled(fixedRate = 60000) // Run every minute
-    @Transactional
-    public void cleanupExpiredOrders() {
-        List<OrderEntity> pendingOrderEntities = orderRepository.findByStatus(OrderStatus.PENDING);
-        pendingOrderEntities.stream()
-                .filter(OrderEntity::isExpired)
-                .forEach(order -> {
-                    order.cancel();
-                    orderRepository.save(order);
-                });
-    }
-} 
\ No newline at end of file
+    private record OrderCursor(LocalDateTime createdAt, Long id) {
+        private static final OrderCursor START = new OrderCursor(null, null);
+
+        static OrderCursor of(OrderEntity order) {
+            return new OrderCursor(order.getCreatedAt(), order.getId());
+        }
+
+        static OrderCursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                return new OrderCursor(LocalDateTime.parse(parts[0]), Long.valueOf(parts[1]));
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
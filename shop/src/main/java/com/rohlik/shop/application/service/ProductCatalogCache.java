@@ -0,0 +1,81 @@
+package com.rohlik.shop.application.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rohlik.shop.adapters.in.web.dto.ProductDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of the product catalog. Caffeine bounds it by size with W-TinyLFU eviction
+ * and a TTL, hit and miss counts are published as {@code cache.gets} meters. Entries are evicted
+ * after the writing transaction commits, so a reader can never put a superseded version back.
+ * Stock is not part of the cached state, it is overlaid from {@link StockReservationLedger}.
+ */
+@Component
+public class ProductCatalogCache {
+    private static final String ACTIVE_PRODUCTS = "active";
+
+    private final Cache<Long, CatalogEntry> products;
+    private final Cache<String, List<ProductDTO>> activeProducts;
+
+    public ProductCatalogCache(MeterRegistry meterRegistry,
+                               @Value("${shop.catalog.cache.maximum-size:10000}") long maximumSize,
+                               @Value("${shop.catalog.cache.ttl:10m}") Duration ttl) {
+        this.products = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+        this.activeProducts = Caffeine.newBuilder()
+            .maximumSize(1)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, products, "catalog.products");
+        CaffeineCacheMetrics.monitor(meterRegistry, activeProducts, "catalog.active-products");
+    }
+
+    /**
+     * Returns the cached entry or loads it; a loader returning {@code null} caches nothing.
+     */
+    public CatalogEntry getProduct(Long id, Function<Long, CatalogEntry> loader) {
+        return products.get(id, loader);
+    }
+
+    public List<ProductDTO> getActiveProducts(Supplier<List<ProductDTO>> loader) {
+        return activeProducts.get(ACTIVE_PRODUCTS, key -> loader.get());
+    }
+
+    /**
+     * Evicts the given products and the active product list once the current transaction commits.
+     */
+    public void evictAfterCommit(Long... ids) {
+        Runnable eviction = () -> {
+            products.invalidateAll(Arrays.asList(ids));
+            activeProducts.invalidateAll();
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+
+    public record CatalogEntry(ProductDTO product, boolean active) {}
+}
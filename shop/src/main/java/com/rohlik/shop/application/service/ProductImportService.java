@@ -0,0 +1,199 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.ProductImportErrorDTO;
+import com.rohlik.shop.adapters.in.web.dto.ProductImportResultDTO;
+import com.rohlik.shop.adapters.in.web.dto.ProductImportRowDTO;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Upserts products by name from a stream of rows, one transaction per chunk of
+ * {@code shop.products.import.batch-size} rows. Each chunk looks its names up with one query,
+ * inserts go out in JDBC batches and the persistence context is cleared afterwards, so memory
+ * stays flat however long the input is.
+ * <p>
+ * A row naming an active product with the same price sets its available stock through
+ * {@link StockReservationLedger#setLevel}, units reserved by pending orders stay reserved on top of
+ * it. A different price creates a new version of the product, exactly like
+ * {@link ProductService#updateProduct}.
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+    private final ProductRepository productRepository;
+    private final OrderRepository orderRepository;
+    private final StockReservationLedger stockLedger;
+    private final ProductCatalogCache catalogCache;
+    private final SalesAggregates salesAggregates;
+    private final Validator validator;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxErrors;
+
+    private final Counter importedRows;
+    private final Counter rejectedRows;
+
+    public ProductImportService(ProductRepository productRepository,
+                                OrderRepository orderRepository,
+                                StockReservationLedger stockLedger,
+                                ProductCatalogCache catalogCache,
+                                SalesAggregates salesAggregates,
+                                Validator validator,
+                                EntityManager entityManager,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${shop.products.import.batch-size:500}") int batchSize,
+                                @Value("${shop.products.import.max-errors:1000}") int maxErrors) {
+        this.productRepository = productRepository;
+        this.orderRepository = orderRepository;
+        this.stockLedger = stockLedger;
+        this.catalogCache = catalogCache;
+        this.salesAggregates = salesAggregates;
+        this.validator = validator;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+        this.importedRows = Counter.builder("shop.products.import.rows")
+            .description("Product rows created or updated by imports")
+            .register(meterRegistry);
+        this.rejectedRows = Counter.builder("shop.products.import.rejected")
+            .description("Product rows rejected by imports")
+            .register(meterRegistry);
+    }
+
+    public ProductImportResultDTO importProducts(Iterator<ProductImportRowDTO> rows) {
+        long start = System.nanoTime();
+        Outcome outcome = new Outcome();
+        List<ProductImportRowDTO> chunk = new ArrayList<>(batchSize);
+        while (rows.hasNext()) {
+            ProductImportRowDTO row = rows.next();
+            outcome.rows++;
+            String error = row.error() != null ? row.error() : validate(row);
+            if (error != null) {
+                outcome.reject(row.line(), error);
+                continue;
+            }
+            chunk.add(row);
+            if (chunk.size() == batchSize) {
+                applyChunk(chunk, outcome);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            applyChunk(chunk, outcome);
+        }
+
+        long durationMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("Imported {} product rows in {} ms: {} created, {} updated, {} rejected",
+            outcome.rows, durationMs, outcome.created, outcome.updated, outcome.rejected);
+        return new ProductImportResultDTO(outcome.rows, outcome.created, outcome.updated, outcome.rejected,
+            durationMs, outcome.rows * 1000 / durationMs, outcome.errors);
+    }
+
+    private String validate(ProductImportRowDTO row) {
+        List<String> messages = validator.validate(toEntity(row)).stream()
+            .map(ConstraintViolation::getMessage)
+            .sorted()
+            .toList();
+        return messages.isEmpty() ? null : String.join(", ", messages);
+    }
+
+    private void applyChunk(List<ProductImportRowDTO> chunk, Outcome outcome) {
+        // one write per name, the last row of a name wins
+        Map<String, ProductImportRowDTO> byName = new LinkedHashMap<>();
+        chunk.forEach(row -> byName.put(row.name(), row));
+        Map<Long, Integer> created = new HashMap<>();
+        Map<Long, Integer> levels = new HashMap<>();
+        long[] counts = new long[2];
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<String, ProductEntity> existing = productRepository.findByNameIn(byName.keySet()).stream()
+                    .filter(ProductEntity::isActive)
+                    .collect(Collectors.toMap(ProductEntity::getName, Function.identity(),
+                        (first, second) -> first.getId() > second.getId() ? first : second));
+                List<Long> evicted = new ArrayList<>();
+                for (ProductImportRowDTO row : byName.values()) {
+                    ProductEntity current = existing.get(row.name());
+                    if (current == null) {
+                        ProductEntity saved = productRepository.save(toEntity(row));
+                        created.put(saved.getId(), saved.getStockQuantity());
+                        counts[0]++;
+                    } else if (current.getPrice().compareTo(row.price()) == 0) {
+                        // the ledger owns the stock of existing products, it stores the level itself
+                        levels.put(current.getId(), row.stockQuantity());
+                        evicted.add(current.getId());
+                        counts[1]++;
+                    } else {
+                        current.setActive(false);
+                        productRepository.save(current);
+                        ProductEntity next = productRepository.save(toEntity(row));
+                        orderRepository.repointItems(current, next, next.getPrice(), OrderStatus.PENDING);
+                        salesAggregates.recordRepointed(current.getId(), next.getId());
+                        created.put(next.getId(), next.getStockQuantity());
+                        evicted.add(current.getId());
+                        counts[1]++;
+                    }
+                }
+                entityManager.flush();
+                entityManager.clear();
+                catalogCache.evictAfterCommit(evicted.toArray(Long[]::new));
+            });
+        } catch (DataAccessException ex) {
+            log.warn("Product import chunk of {} rows rolled back: {}", chunk.size(), ex.getMessage());
+            entityManager.clear();
+            chunk.forEach(row -> outcome.reject(row.line(), "Rolled back with its batch: " + ex.getMostSpecificCause().getMessage()));
+            return;
+        }
+        created.forEach(stockLedger::track);
+        levels.forEach(stockLedger::setLevel);
+        outcome.created += counts[0];
+        outcome.updated += counts[1] + chunk.size() - byName.size();
+        importedRows.increment(chunk.size());
+    }
+
+    private static ProductEntity toEntity(ProductImportRowDTO row) {
+        ProductEntity product = new ProductEntity();
+        product.setName(row.name());
+        product.setPrice(row.price());
+        product.setStockQuantity(row.stockQuantity());
+        return product;
+    }
+
+    private final class Outcome {
+        long rows;
+        long created;
+        long updated;
+        long rejected;
+        final List<ProductImportErrorDTO> errors = new ArrayList<>();
+
+        void reject(long line, String error) {
+            rejected++;
+            rejectedRows.increment();
+            if (errors.size() < maxErrors) {
+                errors.add(new ProductImportErrorDTO(line, error));
+            }
+        }
+    }
+}
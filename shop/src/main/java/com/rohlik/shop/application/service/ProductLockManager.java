@@ -0,0 +1,97 @@
+package com.rohlik.shop.application.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process locks striped by product id. All stripes of one call are taken in ascending stripe
+ * order, so two callers locking overlapping product sets can never deadlock. Waiting is bounded
+ * by {@code shop.stock.lock-timeout}, after which the call fails with
+ * {@link StockLockTimeoutException} and already taken stripes are released.
+ */
+@Component
+public class ProductLockManager {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final long timeoutNanos;
+
+    private final Timer waitTimer;
+    private final Counter timeouts;
+
+    public ProductLockManager(MeterRegistry meterRegistry,
+                              @Value("${shop.stock.lock-stripes:256}") int stripes,
+                              @Value("${shop.stock.lock-timeout:2s}") Duration timeout) {
+        // power of two, so the stripe is a mask instead of a modulo
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+        this.timeoutNanos = timeout.toNanos();
+        this.waitTimer = Timer.builder("shop.stock.lock.wait")
+            .description("Time spent waiting for product stock locks")
+            .register(meterRegistry);
+        this.timeouts = Counter.builder("shop.stock.lock.timeouts")
+            .description("Stock lock acquisitions that gave up after the lock timeout")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Locks the stripes of all given products. Close the returned handle to release them.
+     */
+    public Locked lock(Collection<Long> productIds) {
+        int[] order = productIds.stream()
+            .mapToInt(this::stripe)
+            .distinct()
+            .sorted()
+            .toArray();
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        int taken = 0;
+        try {
+            for (int stripe : order) {
+                if (!stripes[stripe].tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    timeouts.increment();
+                    throw new StockLockTimeoutException("Stock of products " + productIds + " is busy, try again later");
+                }
+                taken++;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new StockLockTimeoutException("Interrupted while waiting for stock of products " + productIds);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (taken < order.length) {
+                unlock(order, taken);
+            }
+        }
+        return () -> unlock(order, order.length);
+    }
+
+    private int stripe(Long productId) {
+        // spread sequential ids, the allocator hands them out in blocks
+        long hash = productId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void unlock(int[] order, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[order[i]].unlock();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Locked extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,47 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.application.domain.ProductEntity;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Where the services keep the catalog. Implemented by the Spring Data repository and, with
+ * {@code shop.persistence.order-store=log}, by an adapter that also journals every write.
+ */
+public interface ProductRepository {
+
+    <S extends ProductEntity> S save(S product);
+
+    <S extends ProductEntity> List<S> saveAll(Iterable<S> products);
+
+    Optional<ProductEntity> findById(Long id);
+
+    List<ProductEntity> findAllById(Iterable<Long> ids);
+
+    List<ProductEntity> findAll();
+
+    long count();
+
+    List<ProductEntity> findByActiveTrue();
+
+    Page<ProductEntity> findByActiveTrue(Pageable pageable);
+
+    List<ProductEntity> findByNameIn(Collection<String> names);
+
+    List<StockLevel> findActiveStockLevels();
+
+    /**
+     * Adds each change to the stock of its product, locking the rows in the iteration order of {@code changes}.
+     */
+    void adjustStockQuantities(Map<Long, Integer> changes);
+
+    interface StockLevel {
+        Long getId();
+        Integer getStockQuantity();
+    }
+}
@@ -1,13 +1,13 @@
 package com.rohlik.shop.application.service;
 
-import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
-import com.rohlik.shop.application.domain.OrderEntity;
 import com.rohlik.shop.application.domain.OrderStatus;
 import com.rohlik.shop.application.domain.ProductEntity;
-import com.rohlik.shop.application.domain.OrderItemEntity;
 import com.rohlik.shop.adapters.in.web.dto.ProductDTO;
+import com.rohlik.shop.adapters.in.web.dto.ProductPageDTO;
 import com.rohlik.shop.adapters.in.web.mapper.ProductMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.dao.OptimisticLockingFailureException;
@@ -19,32 +19,71 @@ import java.util.stream.Stream;
 @Service
 @RequiredArgsConstructor
 public class ProductService {
-    private final JpaProductRepository productRepository;
+    private final ProductRepository productRepository;
+    private final OrderRepository orderRepository;
     private final ProductMapper productMapper;
+    private final StockReservationLedger stockLedger;
+    private final ProductCatalogCache catalogCache;
+    private final SalesAggregates salesAggregates;
+
+    private static final Set<String> SORTABLE_PROPERTIES = Set.of("id", "name", "price", "stockQuantity");
 
     @Transactional
     public ProductDTO createProduct(ProductDTO productDTO) {
         ProductEntity productEntity = productMapper.toEntity(productDTO);
         ProductEntity savedProduct = productRepository.save(productEntity);
+        stockLedger.track(savedProduct.getId(), savedProduct.getStockQuantity());
+        catalogCache.evictAfterCommit();
         return productMapper.toDTO(savedProduct);
     }
 
     public List<ProductDTO> getAllProducts() {
-        return productRepository.findAll().stream()
-            .filter(ProductEntity::isActive)  // Filtrujeme pouze aktivní produkty
+        List<ProductDTO> products = catalogCache.getActiveProducts(() -> productRepository.findByActiveTrue().stream()
             .map(productMapper::toDTO)
+            .collect(Collectors.toUnmodifiableList()));
+        return products.stream()
+            .map(this::withLiveStock)
             .collect(Collectors.toList());
     }
 
+    public ProductPageDTO getProductsPage(Pageable pageable) {
+        pageable.getSort().forEach(order -> {
+            if (!SORTABLE_PROPERTIES.contains(order.getProperty())) {
+                throw new IllegalArgumentException("Cannot sort products by: " + order.getProperty());
+            }
+        });
+        Page<ProductEntity> page = productRepository.findByActiveTrue(pageable);
+        return new ProductPageDTO(
+            page.getContent().stream()
+                .map(productMapper::toDTO)
+                .map(this::withLiveStock)
+                .collect(Collectors.toList()),
+            page.getNumber(),
+            page.getSize(),
+            page.getTotalElements(),
+            page.getTotalPages()
+        );
+    }
+
     public ProductDTO getProductById(Long id) {
-        ProductEntity product = productRepository.findById(id)
-            .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + id));
+        ProductCatalogCache.CatalogEntry entry = catalogCache.getProduct(id, productId -> productRepository.findById(productId)
+            .map(product -> new ProductCatalogCache.CatalogEntry(productMapper.toDTO(product), product.isActive()))
+            .orElse(null));
+        if (entry == null) {
+            throw new IllegalArgumentException("Product not found with id: " + id);
+        }
         
-        if (!product.isActive()) {
+        if (!entry.active()) {
             throw new IllegalArgumentException("Product with id: " + id + " is inactive");
         }
         
-        return productMapper.toDTO(product);
+        return withLiveStock(entry.product());
+    }
+
+    // Cached products carry the stock of the time they were loaded, the ledger knows the current level
+    private ProductDTO withLiveStock(ProductDTO product) {
+        return new ProductDTO(product.id(), product.name(), product.price(),
+            stockLedger.currentLevel(product.id(), product.stockQuantity()), product.version());
     }
 
     @Transactional
@@ -72,27 +111,14 @@ public class ProductService {
         newProduct.setId(null); // Zajistíme, že se vytvoří nová entita s novým ID
         newProduct.setActive(true);
         newProduct.setVersion(0L); // Resetujeme verzi na 0
-        newProduct.setOrderItems(new ArrayList<>()); // Inicializujeme prázdný seznam orderItems
         
         ProductEntity savedNewProduct = productRepository.save(newProduct);
+        stockLedger.track(savedNewProduct.getId(), savedNewProduct.getStockQuantity());
+        catalogCache.evictAfterCommit(id);
         
-        // 3. Pro všechny aktivní objednávky aktualizujeme referenci na nový produkt
-        List<OrderItemEntity> activeOrderItems = existingProduct.getOrderItems().stream()
-            .filter(item -> item.getOrder().getStatus() == OrderStatus.PENDING)
-            .collect(Collectors.toList());
-        
-        for (OrderItemEntity orderItem : activeOrderItems) {
-            orderItem.setPrice(savedNewProduct.getPrice());
-            orderItem.setProduct(savedNewProduct);
-            savedNewProduct.getOrderItems().add(orderItem);
-        }
-        
-        // 4. Odstraníme aktivní orderItems ze seznamu starého produktu
-        existingProduct.getOrderItems().removeAll(activeOrderItems);
-        
-        // 5. Uložíme změny
-        productRepository.save(existingProduct);
-        productRepository.save(savedNewProduct);
+        // 3. Položky aktivních objednávek přesměrujeme na novou verzi jedním UPDATE, bez načítání historie
+        orderRepository.repointItems(existingProduct, savedNewProduct, savedNewProduct.getPrice(), OrderStatus.PENDING);
+        salesAggregates.recordRepointed(id, savedNewProduct.getId());
 
         return productMapper.toDTO(savedNewProduct);
     }
@@ -103,9 +129,7 @@ public class ProductService {
             .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + id));
 
         // Kontrola, zda na produktu nezávisí nějaká aktivní objednávka (ve stavu PENDING)
-        boolean hasActiveOrders = product.getOrderItems().stream()
-                .map(item -> item.getOrder())
-                .anyMatch(order -> order.getStatus() == OrderStatus.PENDING);
+        boolean hasActiveOrders = orderRepository.existsItemOfProduct(id, OrderStatus.PENDING);
 
         // touto podmienkou mozeme menit logiku:
         // Delete a product – Remove a product (if no active orders depend on it).
@@ -115,5 +139,7 @@ public class ProductService {
 
         // Místo smazání pouze deaktivujeme produkt
         product.setActive(false);
-        productRepository.save(product);    }
+        productRepository.save(product);
+        catalogCache.evictAfterCommit(id);
+    }
 }
\ No newline at end of file
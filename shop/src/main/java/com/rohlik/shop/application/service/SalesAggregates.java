@@ -0,0 +1,216 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.ProductSalesDTO;
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderItemEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Per product sales totals kept up to date from order transitions, so reading them is a map
+ * lookup instead of a scan over all order items. Pending orders count as reservations,
+ * completed ones as sold units and revenue, cancelled ones are not counted.
+ * <p>
+ * Transitions are applied after their transaction commits. {@link #rebuild()} recomputes
+ * everything from the order tables; transitions committing while it runs may be counted twice
+ * or missed, so it is meant for recovery rather than routine use.
+ */
+@Slf4j
+@Component
+public class SalesAggregates {
+    private final OrderRepository orderRepository;
+    private final Timer rebuildTimer;
+
+    private volatile ConcurrentMap<Long, Totals> totals = new ConcurrentHashMap<>();
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    public SalesAggregates(OrderRepository orderRepository, MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.rebuildTimer = Timer.builder("shop.sales.rebuild")
+            .description("Time spent recomputing the sales aggregates")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        int products = rebuild();
+        log.info("Sales aggregates rebuilt for {} products", products);
+    }
+
+    /**
+     * Recomputes all totals from the order tables and returns the number of products with sales.
+     */
+    public int rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            return rebuildTimer.record(() -> {
+                ConcurrentMap<Long, Totals> rebuilt = new ConcurrentHashMap<>();
+                for (OrderRepository.ProductSales row : orderRepository.sumSalesByProductAndStatus()) {
+                    Totals productTotals = rebuilt.computeIfAbsent(row.getProductId(), id -> new Totals());
+                    productTotals.add(row.getStatus(), row.getQuantity(), row.getOrders(), row.getRevenue(), 1);
+                }
+                totals = rebuilt;
+                return rebuilt.size();
+            });
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the items of {@code order} from the {@code from} status to its current status once
+     * the transaction commits, {@code from} is {@code null} for a new order.
+     */
+    public void recordTransition(OrderEntity order, OrderStatus from) {
+        OrderStatus to = order.getStatus();
+        if (from == to) {
+            return;
+        }
+        // one delta per product, an order holding a product on two lines is still one reservation
+        Collection<ItemDelta> items = order.getItems().stream()
+            .map(ItemDelta::of)
+            .collect(Collectors.toMap(ItemDelta::productId, Function.identity(), ItemDelta::plus))
+            .values();
+        afterCommit(() -> items.forEach(item -> {
+            Totals productTotals = totals.computeIfAbsent(item.productId(), id -> new Totals());
+            if (from != null) {
+                productTotals.add(from, item.quantity(), 1, item.revenue(), -1);
+            }
+            productTotals.add(to, item.quantity(), 1, item.revenue(), 1);
+        }));
+    }
+
+    /**
+     * Drops the reservations of pending orders cancelled in bulk, given as per product sums.
+     */
+    public void recordExpired(Collection<OrderRepository.ProductQuantity> released) {
+        List<OrderRepository.ProductQuantity> rows = List.copyOf(released);
+        afterCommit(() -> rows.forEach(row -> totals.computeIfAbsent(row.getProductId(), id -> new Totals())
+            .add(OrderStatus.PENDING, row.getQuantity(), row.getOrders(), BigDecimal.ZERO, -1)));
+    }
+
+    /**
+     * Moves the open reservations of a product to its new version, whose pending items were
+     * repointed. Sales made so far stay with the old version.
+     */
+    public void recordRepointed(Long fromProductId, Long toProductId) {
+        afterCommit(() -> {
+            Totals from = totals.get(fromProductId);
+            if (from != null) {
+                long[] pending = from.takePending();
+                totals.computeIfAbsent(toProductId, id -> new Totals())
+                    .add(OrderStatus.PENDING, pending[0], pending[1], BigDecimal.ZERO, 1);
+            }
+        });
+    }
+
+    public ProductSalesDTO getProductSales(Long productId) {
+        Totals productTotals = totals.get(productId);
+        return productTotals != null ? productTotals.toDTO(productId) : new Totals().toDTO(productId);
+    }
+
+    public List<ProductSalesDTO> getAllProductSales() {
+        return totals.entrySet().stream()
+            .map(entry -> entry.getValue().toDTO(entry.getKey()))
+            .sorted(Comparator.comparing(ProductSalesDTO::productId))
+            .collect(Collectors.toList());
+    }
+
+    private void afterCommit(Runnable update) {
+        Runnable guarded = () -> {
+            rebuildLock.readLock().lock();
+            try {
+                update.run();
+            } finally {
+                rebuildLock.readLock().unlock();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guarded.run();
+                }
+            });
+        } else {
+            guarded.run();
+        }
+    }
+
+    private record ItemDelta(Long productId, long quantity, BigDecimal revenue) {
+        static ItemDelta of(OrderItemEntity item) {
+            return new ItemDelta(item.getProduct().getId(), item.getQuantity(),
+                item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+
+        ItemDelta plus(ItemDelta other) {
+            return new ItemDelta(productId, quantity + other.quantity, revenue.add(other.revenue));
+        }
+    }
+
+    private static final class Totals {
+        private long unitsSold;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private long reservedUnits;
+        private long openReservations;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        void add(OrderStatus status, long quantity, long orders, BigDecimal orderRevenue, int sign) {
+            lock.lock();
+            try {
+                switch (status) {
+                    case PENDING -> {
+                        reservedUnits += sign * quantity;
+                        openReservations += sign * orders;
+                    }
+                    case COMPLETED -> {
+                        unitsSold += sign * quantity;
+                        revenue = sign > 0 ? revenue.add(orderRevenue) : revenue.subtract(orderRevenue);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long[] takePending() {
+            lock.lock();
+            try {
+                long[] pending = {reservedUnits, openReservations};
+                reservedUnits = 0;
+                openReservations = 0;
+                return pending;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        ProductSalesDTO toDTO(Long productId) {
+            lock.lock();
+            try {
+                return new ProductSalesDTO(productId, unitsSold, revenue, reservedUnits, openReservations);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.rohlik.shop.application.service;
+
+/**
+ * The stock of a product stayed locked by other reservations for longer than the lock timeout.
+ * Unlike a rejected reservation it is worth retrying, so it is not an {@link IllegalStateException}.
+ */
+public class StockLockTimeoutException extends RuntimeException {
+    public StockLockTimeoutException(String message) {
+        super(message);
+    }
+}
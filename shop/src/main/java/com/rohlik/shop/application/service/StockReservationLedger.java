@@ -0,0 +1,309 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.LiveUpdateDTO;
+import com.rohlik.shop.application.domain.ProductEntity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory source of truth for available stock. Reservations are accepted or rejected
+ * with CAS on per-product counters, and every committed change of a level is pushed to {@link LiveUpdateBroadcaster}
+ * subscribers.
+ * <p>
+ * The {@link StockStore}, by default {@link ProductEntity#getStockQuantity()}, gets the changes of a transaction
+ * as relative adjustments right before it commits, in ascending product order, so the stored levels commit
+ * together with the orders that changed them and a restart recovers exactly the committed levels. Row locks
+ * are only held while committing and the checks themselves never touch the database.
+ * <p>
+ * A product's counter holds its available units together with the units reserved by transactions that
+ * are still open, so committing, rolling back and releasing are each a single CAS and never see the two
+ * halves out of step. Only reserving and replacing a level take the product locks of {@link ProductLockManager}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockReservationLedger {
+    private final StockStore stockStore;
+    private final LiveUpdateBroadcaster liveUpdates;
+    private final ProductLockManager productLocks;
+
+    private final ConcurrentMap<Long, StockCounter> counters = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        Map<Long, Integer> levels = stockStore.loadLevels();
+        levels.forEach((productId, level) -> counters.putIfAbsent(productId, new StockCounter(level)));
+        log.info("Stock ledger recovered {} product counters", levels.size());
+    }
+
+    /**
+     * Reserves all quantities or none of them. When called inside a transaction the
+     * reservation is returned automatically if that transaction rolls back.
+     * <p>
+     * Reservations of the same products are serialized by {@link ProductLockManager}, so a
+     * reservation that is undone halfway never makes a concurrent one fail for lack of stock.
+     * Fails with {@link StockLockTimeoutException} when the products stay locked for too long.
+     */
+    public void reserve(Map<Long, Integer> quantities) {
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        Map<Long, Integer> applied = new TreeMap<>();
+        try (ProductLockManager.Locked locked = productLocks.lock(quantities.keySet())) {
+            for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+                StockCounter counter = counter(entry.getKey());
+                if (counter == null || !counter.tryReserve(entry.getValue(), inTransaction)) {
+                    applied.forEach((productId, quantity) -> counters.get(productId).undo(quantity, inTransaction));
+                    throw new IllegalStateException("Insufficient stock for product with id: " + entry.getKey());
+                }
+                applied.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (inTransaction) {
+            Map<Long, Integer> changes = transactionChanges();
+            applied.forEach((productId, quantity) -> changes.merge(productId, -quantity, Integer::sum));
+            // subscribers only see committed levels, like the order status updates
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    boolean committed = status == STATUS_COMMITTED;
+                    applied.forEach((productId, quantity) -> counters.get(productId).complete(quantity, committed));
+                    // on rollback, a level published by another commit in the meantime still counted these units out
+                    applied.keySet().forEach(StockReservationLedger.this::publishLevel);
+                }
+            });
+        } else {
+            Map<Long, Integer> changes = new TreeMap<>();
+            applied.forEach((productId, quantity) -> changes.put(productId, -quantity));
+            try {
+                stockStore.adjustLevels(changes);
+            } catch (RuntimeException ex) {
+                // the store takes all changes or none
+                applied.forEach((productId, quantity) -> counters.get(productId).release(quantity));
+                throw ex;
+            }
+            applied.keySet().forEach(this::publishLevel);
+        }
+    }
+
+    /**
+     * Returns reserved stock. Inside a transaction the stock is only returned once it commits.
+     */
+    public void release(Map<Long, Integer> quantities) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<Long, Integer> pending = Map.copyOf(quantities);
+            // loaded now, a counter loaded after commit would already contain the returned stock
+            pending.keySet().forEach(this::counter);
+            Map<Long, Integer> changes = transactionChanges();
+            pending.forEach((productId, quantity) -> changes.merge(productId, quantity, Integer::sum));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pending.forEach(StockReservationLedger.this::add);
+                }
+            });
+        } else {
+            quantities.forEach(this::add);
+            stockStore.adjustLevels(new TreeMap<>(quantities));
+        }
+    }
+
+    /**
+     * Sets the level of a product whose stock was just written by the catalog, e.g. a new product version.
+     * Only for products nobody could have reserved yet, existing products go through {@link #setLevel}.
+     * Inside a transaction the product only counts once it commits, like a reservation.
+     */
+    public void track(Long productId, int stockQuantity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    startTracking(productId, stockQuantity);
+                }
+            });
+        } else {
+            startTracking(productId, stockQuantity);
+        }
+    }
+
+    /**
+     * Replaces the available stock of an existing product, e.g. from a stock import, and stores it at once,
+     * so it must not be called inside a transaction. The level is stock free for new orders: units held by
+     * pending orders stay reserved on top of it and come back when those orders are cancelled or expire.
+     * Reservations whose transaction is still open count as made right after the new level was set,
+     * so they are subtracted from it and returned to it on rollback.
+     */
+    public void setLevel(Long productId, int level) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Stock levels are set outside of transactions");
+        }
+        StockCounter counter = counter(productId);
+        if (counter == null) {
+            throw new IllegalArgumentException("Product not found with id: " + productId);
+        }
+        int change;
+        // under the lock, so a reservation never checks one level and applies against another
+        try (ProductLockManager.Locked locked = productLocks.lock(List.of(productId))) {
+            change = counter.set(level);
+        }
+        try {
+            stockStore.adjustLevels(Map.of(productId, change));
+        } catch (RuntimeException ex) {
+            counter.release(-change);
+            throw ex;
+        }
+        publishLevel(productId);
+    }
+
+    public int available(Long productId) {
+        StockCounter counter = counter(productId);
+        return counter != null ? counter.available() : 0;
+    }
+
+    /**
+     * Live level of a product without touching the database, {@code persisted} is used for unknown products.
+     */
+    public int currentLevel(Long productId, int persisted) {
+        StockCounter counter = counters.get(productId);
+        return counter != null ? counter.available() : persisted;
+    }
+
+    private StockCounter counter(Long productId) {
+        StockCounter counter = counters.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        // Counters are never dropped, so a missing one means the store still holds the current level
+        return stockStore.findLevel(productId)
+            .map(level -> counters.computeIfAbsent(productId, id -> new StockCounter(level)))
+            .orElse(null);
+    }
+
+    private void startTracking(Long productId, int stockQuantity) {
+        // an order may have loaded the committed product from the store in the meantime and reserved from it
+        counters.putIfAbsent(productId, new StockCounter(stockQuantity));
+        publishLevel(productId);
+    }
+
+    /**
+     * Stock changes of the current transaction by product. They reach the store in one batch with one adjustment
+     * per product in ascending product order, so two committing transactions never wait for each other's rows crosswise.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, Integer> transactionChanges() {
+        Map<Long, Integer> bound = (Map<Long, Integer>) TransactionSynchronizationManager.getResource(this);
+        if (bound != null) {
+            return bound;
+        }
+        Map<Long, Integer> changes = new TreeMap<>();
+        TransactionSynchronizationManager.bindResource(this, changes);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                changes.values().removeIf(change -> change == 0);
+                if (!changes.isEmpty()) {
+                    stockStore.adjustLevels(changes);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(StockReservationLedger.this);
+            }
+        });
+        return changes;
+    }
+
+    private void add(Long productId, int quantity) {
+        StockCounter counter = counter(productId);
+        if (counter == null) {
+            log.warn("Cannot return {} pieces of stock to unknown product {}", quantity, productId);
+            return;
+        }
+        counter.release(quantity);
+        publishLevel(productId);
+    }
+
+    private void publishLevel(Long productId) {
+        if (!liveUpdates.hasSubscribers()) {
+            return;
+        }
+        StockCounter counter = counters.get(productId);
+        if (counter != null) {
+            liveUpdates.publish(LiveUpdateDTO.productStock(productId, counter.available()));
+        }
+    }
+
+    /**
+     * Available units in the high half of one long and units reserved by open transactions in the low half.
+     */
+    private static final class StockCounter {
+        private final AtomicLong state;
+
+        StockCounter(int available) {
+            this.state = new AtomicLong(pack(available, 0));
+        }
+
+        int available() {
+            return available(state.get());
+        }
+
+        boolean tryReserve(int quantity, boolean inTransaction) {
+            while (true) {
+                long current = state.get();
+                if (available(current) < quantity) {
+                    return false;
+                }
+                long next = pack(available(current) - quantity, inFlight(current) + (inTransaction ? quantity : 0));
+                if (state.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        void undo(int quantity, boolean inTransaction) {
+            state.accumulateAndGet(0, (current, ignored) ->
+                pack(available(current) + quantity, inFlight(current) - (inTransaction ? quantity : 0)));
+        }
+
+        void complete(int quantity, boolean committed) {
+            state.accumulateAndGet(0, (current, ignored) ->
+                pack(available(current) + (committed ? 0 : quantity), inFlight(current) - quantity));
+        }
+
+        void release(int quantity) {
+            state.accumulateAndGet(0, (current, ignored) -> pack(available(current) + quantity, inFlight(current)));
+        }
+
+        /**
+         * Returns by how much the committed level changed, units reserved by open transactions count as not taken.
+         */
+        int set(int level) {
+            long previous = state.getAndAccumulate(0, (current, ignored) -> pack(level - inFlight(current), inFlight(current)));
+            return level - available(previous) - inFlight(previous);
+        }
+
+        private static long pack(int available, int inFlight) {
+            return ((long) available << 32) | (inFlight & 0xFFFFFFFFL);
+        }
+
+        private static int available(long state) {
+            return (int) (state >> 32);
+        }
+
+        private static int inFlight(long state) {
+            return (int) state;
+        }
+    }
+}
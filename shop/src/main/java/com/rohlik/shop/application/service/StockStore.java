@@ -0,0 +1,24 @@
+package com.rohlik.shop.application.service;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Where {@link StockReservationLedger} keeps stock levels between restarts. Selected with
+ * {@code shop.persistence.stock-store}, the catalog itself always stays in the database.
+ */
+public interface StockStore {
+
+    /**
+     * Levels of all active products by product id.
+     */
+    Map<Long, Integer> loadLevels();
+
+    Optional<Integer> findLevel(Long productId);
+
+    /**
+     * Adds each change to the stored level of its product, in the iteration order of {@code changes}.
+     * Inside a transaction the changes commit or roll back with it.
+     */
+    void adjustLevels(Map<Long, Integer> changes);
+}
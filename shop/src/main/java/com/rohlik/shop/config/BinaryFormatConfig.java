@@ -0,0 +1,38 @@
+package com.rohlik.shop.config;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * CBOR ({@code application/cbor}) and Smile ({@code application/x-jackson-smile}) next to JSON on
+ * every controller, chosen by the Accept header for responses and by Content-Type for request
+ * bodies. JSON stays the default for clients that accept anything.
+ */
+@Configuration
+public class BinaryFormatConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // the default converters for these formats use plain mappers without our date format
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+            || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        int position = converters.size();
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2HttpMessageConverter) {
+                position = i + 1;
+                break;
+            }
+        }
+        converters.addAll(position, List.of(
+            new MappingJackson2CborHttpMessageConverter(JacksonConfig.configure(new CBORMapper())),
+            new MappingJackson2SmileHttpMessageConverter(JacksonConfig.configure(new SmileMapper()))));
+    }
+}
@@ -5,8 +5,8 @@ import com.rohlik.shop.application.domain.OrderItemEntity;
 import com.rohlik.shop.application.domain.OrderStatus;
 import com.rohlik.shop.application.domain.ProductEntity;
 import com.rohlik.shop.application.domain.UserEntity;
-import com.rohlik.shop.adapters.out.persistence.JpaOrderRepository;
-import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.application.service.OrderRepository;
+import com.rohlik.shop.application.service.ProductRepository;
 import com.rohlik.shop.adapters.out.persistence.JpaUserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.CommandLineRunner;
@@ -17,13 +17,16 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
 public class DataInitializer implements CommandLineRunner {
-    private final JpaProductRepository productRepository;
+    private final ProductRepository productRepository;
     private final JpaUserRepository userRepository;
-    private final JpaOrderRepository orderRepository;
+    private final OrderRepository orderRepository;
     private final PasswordEncoder passwordEncoder;
 
     @Override
@@ -61,25 +64,28 @@ public class DataInitializer implements CommandLineRunner {
 
         // Initialize some test orders
         if (orderRepository.count() == 0) {
+            Map<String, ProductEntity> products = productRepository.findAll().stream()
+                .collect(Collectors.toMap(ProductEntity::getName, Function.identity()));
+
             // Pending order
             OrderEntity pendingOrder = createOrder(OrderStatus.PENDING);
-            pendingOrder.addItem(createOrderItem(productRepository.findByName("Mléko").get(), 2));
-            pendingOrder.addItem(createOrderItem(productRepository.findByName("Chléb").get(), 1));
-            pendingOrder.addItem(createOrderItem(productRepository.findByName("Vejce 10ks").get(), 1));
-            orderRepository.save(pendingOrder);
+            pendingOrder.addItem(createOrderItem(products.get("Mléko"), 2));
+            pendingOrder.addItem(createOrderItem(products.get("Chléb"), 1));
+            pendingOrder.addItem(createOrderItem(products.get("Vejce 10ks"), 1));
 
             // Completed order
             OrderEntity completedOrder = createOrder(OrderStatus.COMPLETED);
-            completedOrder.addItem(createOrderItem(productRepository.findByName("Máslo").get(), 2));
-            completedOrder.addItem(createOrderItem(productRepository.findByName("Sýr Eidam").get(), 1));
-            completedOrder.addItem(createOrderItem(productRepository.findByName("Jablka").get(), 3));
-            orderRepository.save(completedOrder);
+            completedOrder.addItem(createOrderItem(products.get("Máslo"), 2));
+            completedOrder.addItem(createOrderItem(products.get("Sýr Eidam"), 1));
+            completedOrder.addItem(createOrderItem(products.get("Jablka"), 3));
 
             // Cancelled order
             OrderEntity cancelledOrder = createOrder(OrderStatus.CANCELLED);
-            cancelledOrder.addItem(createOrderItem(productRepository.findByName("Banány").get(), 2));
-            cancelledOrder.addItem(createOrderItem(productRepository.findByName("Brambory").get(), 5));
-            orderRepository.save(cancelledOrder);
+            cancelledOrder.addItem(createOrderItem(products.get("Banány"), 2));
+            cancelledOrder.addItem(createOrderItem(products.get("Brambory"), 5));
+
+            // Orders and items are inserted in JDBC batches
+            orderRepository.saveAll(Arrays.asList(pendingOrder, completedOrder, cancelledOrder));
         }
     }
 
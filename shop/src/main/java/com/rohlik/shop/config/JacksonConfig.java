@@ -20,8 +20,14 @@ public class JacksonConfig {
 
     @Bean
     public ObjectMapper objectMapper() {
-        ObjectMapper objectMapper = new ObjectMapper();
-        
+        return configure(new ObjectMapper());
+    }
+
+    /**
+     * Registers the application's modules on a mapper of any data format, so JSON, CBOR and Smile
+     * carry the same values.
+     */
+    public static <M extends ObjectMapper> M configure(M objectMapper) {
         JavaTimeModule javaTimeModule = new JavaTimeModule();
         javaTimeModule.addSerializer(LocalDateTime.class, new LocalDateTimeSerializer(DateTimeFormatter.ofPattern(dateTimeFormat)));
         javaTimeModule.addDeserializer(LocalDateTime.class, new LocalDateTimeDeserializer(DateTimeFormatter.ofPattern(dateTimeFormat)));
@@ -1,14 +1,18 @@
 package com.rohlik.shop.config;
 
 import com.rohlik.shop.service.JwtService;
+import com.rohlik.shop.service.UserStateCache;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -16,12 +20,27 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 @Component
-@RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final UserStateCache userStateCache;
+    private final boolean stateless;
+    private final boolean checkUserState;
+
+    public JwtAuthenticationFilter(JwtService jwtService,
+                                   UserDetailsService userDetailsService,
+                                   UserStateCache userStateCache,
+                                   @Value("${shop.security.stateless:true}") boolean stateless,
+                                   @Value("${shop.security.user-state-cache.enabled:true}") boolean checkUserState) {
+        this.jwtService = jwtService;
+        this.userDetailsService = userDetailsService;
+        this.userStateCache = userStateCache;
+        this.stateless = stateless;
+        this.checkUserState = checkUserState;
+    }
 
     @Override
     protected void doFilterInternal(
@@ -30,7 +49,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             @NonNull FilterChain filterChain
     ) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
+        final Claims claims;
         final String username;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -38,13 +57,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        jwt = authHeader.substring(7);
-        username = jwtService.extractUsername(jwt);
+        // one cache lookup per request, the checks below work on these claims
+        claims = jwtService.extractAllClaims(authHeader.substring(7));
+        username = claims.getSubject();
 
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            UserDetails userDetails = loadPrincipal(claims, username);
 
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            if (userDetails != null && jwtService.isTokenValid(claims, userDetails)) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -58,4 +78,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Builds the principal from the token claims, or loads the user when running stateful
+     * or when the token was issued before authorities were part of the claims.
+     */
+    private UserDetails loadPrincipal(Claims claims, String username) {
+        if (stateless) {
+            List<GrantedAuthority> authorities = jwtService.extractAuthorities(claims);
+            if (!authorities.isEmpty()) {
+                if (checkUserState && !userStateCache.isActive(username)) {
+                    return null;
+                }
+                return User.withUsername(username).password("").authorities(authorities).build();
+            }
+        }
+        return this.userDetailsService.loadUserByUsername(username);
+    }
+}
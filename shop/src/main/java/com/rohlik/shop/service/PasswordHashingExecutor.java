@@ -0,0 +1,53 @@
+package com.rohlik.shop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Small bounded pool for the BCrypt heavy auth work, so a login storm queues here instead of
+ * occupying every servlet thread. When the queue is full the task is rejected right away with
+ * {@link RejectedExecutionException}, which the API answers with 503.
+ * <p>
+ * Deliberately not an {@link java.util.concurrent.Executor} bean, it must not replace the
+ * application task executor used for async requests.
+ */
+@Component
+public class PasswordHashingExecutor {
+    private final ThreadPoolExecutor executor;
+
+    public PasswordHashingExecutor(@Value("${shop.auth.hashing.threads:2}") int threads,
+                                   @Value("${shop.auth.hashing.queue-capacity:100}") int queueCapacity,
+                                   MeterRegistry meterRegistry) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        Counter rejected = meterRegistry.counter("shop.auth.hashing.rejected");
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet()),
+            (runnable, pool) -> {
+                rejected.increment();
+                throw new RejectedExecutionException("Too many authentication requests, try again later");
+            });
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "password-hashing");
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
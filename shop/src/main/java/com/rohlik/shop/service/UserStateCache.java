@@ -0,0 +1,49 @@
+package com.rohlik.shop.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Short lived cache of whether a user may still authenticate. Lets the authentication filter
+ * honour deleted or disabled users without querying the users table on every request,
+ * a revoked user is rejected at the latest once the entry expires.
+ */
+@Component
+public class UserStateCache {
+    private final UserDetailsService userDetailsService;
+    private final Cache<String, Boolean> states;
+
+    public UserStateCache(UserDetailsService userDetailsService,
+                          @Value("${shop.security.user-state-cache.ttl:30s}") Duration ttl,
+                          @Value("${shop.security.user-state-cache.maximum-size:10000}") long maximumSize) {
+        this.userDetailsService = userDetailsService;
+        this.states = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    public boolean isActive(String username) {
+        return states.get(username, this::loadState);
+    }
+
+    public void evict(String username) {
+        states.invalidate(username);
+    }
+
+    private boolean loadState(String username) {
+        try {
+            UserDetails user = userDetailsService.loadUserByUsername(username);
+            return user.isEnabled() && user.isAccountNonLocked() && user.isAccountNonExpired();
+        } catch (UsernameNotFoundException ex) {
+            return false;
+        }
+    }
+}
@@ -1,12 +1,22 @@
 package com.rohlik.shop.adapters.in.web;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.rohlik.shop.adapters.in.web.dto.OrderBatchResultDTO;
 import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderFilterDTO;
 import com.rohlik.shop.adapters.in.web.dto.OrderItemDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderPageDTO;
 import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.service.IdempotencyConflictException;
+import com.rohlik.shop.application.service.IdempotentOrderService;
 import com.rohlik.shop.application.service.OrderService;
+import com.rohlik.shop.config.JacksonConfig;
 import com.rohlik.shop.config.SecurityConfig;
 import com.rohlik.shop.service.JwtService;
+import com.rohlik.shop.service.UserStateCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,20 +28,31 @@ import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(OrderController.class)
-@Import(SecurityConfig.class)
+@Import({SecurityConfig.class, UserStateCache.class})
 class OrderEntityControllerIntegrationTest {
 
     @Autowired
@@ -40,6 +61,9 @@ class OrderEntityControllerIntegrationTest {
     @MockBean
     private OrderService orderService;
 
+    @MockBean
+    private IdempotentOrderService idempotentOrderService;
+
     @MockBean
     private JwtService jwtService;
 
@@ -78,8 +102,8 @@ class OrderEntityControllerIntegrationTest {
         jwtToken = "test.jwt.token";
         
         when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
-        when(jwtService.extractUsername(anyString())).thenReturn("testuser");
-        when(jwtService.isTokenValid(anyString(), any(UserDetails.class))).thenReturn(true);
+        when(jwtService.extractAllClaims(anyString())).thenReturn(Jwts.claims().setSubject("testuser"));
+        when(jwtService.isTokenValid(any(Claims.class), any(UserDetails.class))).thenReturn(true);
     }
 
     @Test
@@ -97,6 +121,52 @@ class OrderEntityControllerIntegrationTest {
                 .andExpect(jsonPath("$.items[0].quantity").value(testOrderItemDTO.quantity()));
     }
 
+    @Test
+    void createOrder_WithIdempotencyKey_ShouldUseIdempotentService() throws Exception {
+        when(idempotentOrderService.createOrder(eq("retry-1"), any(OrderDTO.class))).thenReturn(testOrderDTO);
+
+        mockMvc.perform(post("/api/orders")
+                .header("Authorization", "Bearer " + jwtToken)
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testOrderDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(testOrderDTO.id()));
+
+        verify(orderService, never()).createOrder(any(OrderDTO.class));
+    }
+
+    @Test
+    void createOrder_WhenIdempotencyKeyConflicts_ShouldReturnConflict() throws Exception {
+        when(idempotentOrderService.createOrder(eq("retry-1"), any(OrderDTO.class)))
+            .thenThrow(new IdempotencyConflictException("Idempotency key retry-1 was already used for a different order"));
+
+        mockMvc.perform(post("/api/orders")
+                .header("Authorization", "Bearer " + jwtToken)
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testOrderDTO)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void createOrders_ShouldReturnResultPerOrder() throws Exception {
+        when(orderService.createOrders(any())).thenReturn(Arrays.asList(
+            OrderBatchResultDTO.created(0, testOrderDTO),
+            OrderBatchResultDTO.rejected(1, "Insufficient stock for product with id: 1")
+        ));
+
+        mockMvc.perform(post("/api/orders/batch")
+                .header("Authorization", "Bearer " + jwtToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(testOrderDTO, testOrderDTO))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].created").value(true))
+                .andExpect(jsonPath("$[0].order.id").value(testOrderDTO.id()))
+                .andExpect(jsonPath("$[1].created").value(false))
+                .andExpect(jsonPath("$[1].error").value("Insufficient stock for product with id: 1"));
+    }
+
     @Test
     void getAllOrders_ShouldReturnListOfOrders() throws Exception {
         when(orderService.getAllOrders()).thenReturn(Arrays.asList(testOrderDTO));
@@ -109,6 +179,104 @@ class OrderEntityControllerIntegrationTest {
                 .andExpect(jsonPath("$[0].items[0].id").value(testOrderItemDTO.id()));
     }
 
+    @Test
+    void getOrdersPage_ShouldReturnItemsAndCursor() throws Exception {
+        when(orderService.getOrdersPage(any(OrderFilterDTO.class), eq("abc"), eq(20)))
+            .thenReturn(new OrderPageDTO(Arrays.asList(testOrderDTO), "def"));
+
+        mockMvc.perform(get("/api/orders/page")
+                .param("cursor", "abc")
+                .param("limit", "20")
+                .param("status", "PENDING")
+                .header("Authorization", "Bearer " + jwtToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(testOrderDTO.id()))
+                .andExpect(jsonPath("$.nextCursor").value("def"));
+    }
+
+    @Test
+    void streamOrders_ShouldWriteNewlineDelimitedJson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<OrderDTO> consumer = invocation.getArgument(1);
+            consumer.accept(testOrderDTO);
+            consumer.accept(testOrderDTO);
+            return null;
+        }).when(orderService).streamOrders(any(OrderFilterDTO.class), any());
+
+        MvcResult result = mockMvc.perform(get("/api/orders")
+                .accept("application/x-ndjson")
+                .header("Authorization", "Bearer " + jwtToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.trim().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(testOrderDTO.id(), objectMapper.readValue(lines[1], OrderDTO.class).id());
+    }
+
+    @Test
+    void exportOrders_ShouldWriteGzippedCsvWithOneLinePerItem() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<OrderDTO> consumer = invocation.getArgument(2);
+            consumer.accept(testOrderDTO);
+            return null;
+        }).when(orderService).exportOrders(any(OrderFilterDTO.class), eq(5L), any());
+
+        MvcResult result = mockMvc.perform(get("/api/orders/export")
+                .param("format", "csv")
+                .param("afterId", "5")
+                .header("Accept-Encoding", "gzip, deflate")
+                .header("Authorization", "Bearer " + jwtToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(content().contentType("text/csv"))
+                .andReturn().getResponse().getContentAsByteArray();
+        String[] lines = new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(),
+                StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("orderId,createdAt,expiresAt,status,itemId,productId,productName,quantity,price", lines[0]);
+        assertEquals(testOrderDTO.id() + ",", lines[1].substring(0, lines[1].indexOf(',') + 1));
+    }
+
+    @Test
+    void exportOrders_WhenGzipHasZeroQuality_ShouldWritePlainCsvWithEmptyAndQuotedFields() throws Exception {
+        OrderDTO order = new OrderDTO(7L, LocalDateTime.of(2025, 3, 1, 12, 0), null, OrderStatus.COMPLETED,
+            Arrays.asList(new OrderItemDTO(3L, 1L, "Mléko\r1l", 2, new BigDecimal("29.90"))), 0L);
+        doAnswer(invocation -> {
+            Consumer<OrderDTO> consumer = invocation.getArgument(2);
+            consumer.accept(order);
+            return null;
+        }).when(orderService).exportOrders(any(OrderFilterDTO.class), eq(null), any());
+
+        MvcResult result = mockMvc.perform(get("/api/orders/export")
+                .param("format", "csv")
+                .header("Accept-Encoding", "gzip;q=0, *")
+                .header("Authorization", "Bearer " + jwtToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertEquals("7,2025-03-01T12:00,,COMPLETED,3,1,\"Mléko\r1l\",2,29.90", body.split("\n")[1]);
+    }
+
+    @Test
+    void exportOrders_ShouldRejectUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/orders/export")
+                .param("format", "xml")
+                .header("Authorization", "Bearer " + jwtToken))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getOrderById_ShouldReturnOrder() throws Exception {
         when(orderService.getOrderById(1L)).thenReturn(testOrderDTO);
@@ -121,6 +289,23 @@ class OrderEntityControllerIntegrationTest {
                 .andExpect(jsonPath("$.items[0].id").value(testOrderItemDTO.id()));
     }
 
+    @Test
+    void getOrderById_ShouldNegotiateCbor() throws Exception {
+        when(orderService.getOrderById(1L)).thenReturn(testOrderDTO);
+
+        byte[] body = mockMvc.perform(get("/api/orders/1")
+                .accept(MediaType.APPLICATION_CBOR)
+                .header("Authorization", "Bearer " + jwtToken))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        OrderDTO decoded = JacksonConfig.configure(new CBORMapper()).readValue(body, OrderDTO.class);
+        // same seconds-precision timestamps as the JSON format, prices keep their scale
+        assertEquals(testOrderDTO.createdAt().truncatedTo(ChronoUnit.SECONDS), decoded.createdAt());
+        assertEquals(testOrderDTO.items(), decoded.items());
+    }
+
     @Test
     void cancelOrder_ShouldReturnOk() throws Exception {
         mockMvc.perform(post("/api/orders/1/cancel")
@@ -1,11 +1,15 @@
 package com.rohlik.shop.adapters.in.web;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.rohlik.shop.adapters.in.web.dto.ProductDTO;
 import com.rohlik.shop.application.service.ProductService;
 import com.rohlik.shop.config.JacksonConfig;
 import com.rohlik.shop.config.SecurityConfig;
 import com.rohlik.shop.service.JwtService;
+import com.rohlik.shop.service.UserStateCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +26,7 @@ import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Collections;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
@@ -29,9 +34,11 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(ProductController.class)
-@Import({SecurityConfig.class, JacksonConfig.class})
+@Import({SecurityConfig.class, JacksonConfig.class, UserStateCache.class})
 class ProductEntityControllerIntegrationTest {
 
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -66,8 +73,8 @@ class ProductEntityControllerIntegrationTest {
         jwtToken = "test.jwt.token";
         
         when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
-        when(jwtService.extractUsername(anyString())).thenReturn("testuser");
-        when(jwtService.isTokenValid(anyString(), any(UserDetails.class))).thenReturn(true);
+        when(jwtService.extractAllClaims(anyString())).thenReturn(Jwts.claims().setSubject("testuser"));
+        when(jwtService.isTokenValid(any(Claims.class), any(UserDetails.class))).thenReturn(true);
     }
 
     @Test
@@ -85,6 +92,23 @@ class ProductEntityControllerIntegrationTest {
                 .andExpect(jsonPath("$.stockQuantity").value(testProductDTO.stockQuantity()));
     }
 
+    @Test
+    void createProduct_ShouldReadAndWriteSmile() throws Exception {
+        SmileMapper smileMapper = JacksonConfig.configure(new SmileMapper());
+        when(productService.createProduct(testProductDTO)).thenReturn(testProductDTO);
+
+        byte[] body = mockMvc.perform(post("/api/products")
+                .header("Authorization", "Bearer " + jwtToken)
+                .contentType(SMILE)
+                .accept(SMILE)
+                .content(smileMapper.writeValueAsBytes(testProductDTO)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(testProductDTO, smileMapper.readValue(body, ProductDTO.class));
+    }
+
     @Test
     void getAllProducts_ShouldReturnListOfProducts() throws Exception {
         when(productService.getAllProducts()).thenReturn(Arrays.asList(testProductDTO));
@@ -0,0 +1,64 @@
+package com.rohlik.shop.adapters.in.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rohlik.shop.adapters.in.web.dto.ProductImportRowDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductImportReaderTest {
+
+    private final ProductImportReader reader = new ProductImportReader(new ObjectMapper());
+
+    @Test
+    void read_Csv_ShouldMapColumnsByHeaderAndReportBadNumbersPerRow() {
+        String csv = """
+            stockQuantity,Name,price
+            10,"Sýr ""Eidam"", 30%",89.90
+
+            5,Mléko,abc
+            """;
+
+        List<ProductImportRowDTO> rows = readAll(csv, ProductImportReader.TEXT_CSV);
+
+        assertEquals(2, rows.size());
+        assertEquals(ProductImportRowDTO.parsed(2, "Sýr \"Eidam\", 30%", new BigDecimal("89.90"), 10), rows.get(0));
+        assertEquals(4, rows.get(1).line());
+        assertEquals("Price is not a number: abc", rows.get(1).error());
+    }
+
+    @Test
+    void read_Csv_WithoutRequiredColumn_ShouldRejectBody() {
+        assertThrows(IllegalArgumentException.class, () -> readAll("name,price\nMléko,29.90\n", ProductImportReader.TEXT_CSV));
+    }
+
+    @Test
+    void read_Ndjson_ShouldParseEachLineOnItsOwn() {
+        String ndjson = """
+            {"name":"Mléko","price":29.90,"stockQuantity":50}
+            {"name":"Chléb",
+            {"name":"Máslo","price":"69.90"}
+            """;
+
+        List<ProductImportRowDTO> rows = readAll(ndjson, MediaType.APPLICATION_NDJSON);
+
+        assertEquals(3, rows.size());
+        assertEquals(ProductImportRowDTO.parsed(1, "Mléko", new BigDecimal("29.90"), 50), rows.get(0));
+        assertTrue(rows.get(1).error().startsWith("Invalid JSON"));
+        assertEquals(ProductImportRowDTO.parsed(3, "Máslo", new BigDecimal("69.90"), null), rows.get(2));
+    }
+
+    private List<ProductImportRowDTO> readAll(String body, MediaType contentType) {
+        List<ProductImportRowDTO> rows = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), contentType)
+            .forEachRemaining(rows::add);
+        return rows;
+    }
+}
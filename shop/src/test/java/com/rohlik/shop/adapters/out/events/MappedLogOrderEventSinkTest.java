@@ -0,0 +1,78 @@
+package com.rohlik.shop.adapters.out.events;
+
+import com.rohlik.shop.application.domain.OrderEvent;
+import com.rohlik.shop.application.domain.OrderEventType;
+import com.rohlik.shop.application.domain.OrderStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedLogOrderEventSinkTest {
+
+    private static final String DATASOURCE = "jdbc:h2:file:./target/shopdb";
+    // 38 bytes per record with its header, three fit in a segment
+    private static final DataSize SEGMENT = DataSize.ofBytes(120);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replay_AfterRestart_ShouldReadAllSegmentsInOrder() throws IOException {
+        MappedLogOrderEventSink sink = new MappedLogOrderEventSink(DATASOURCE, directory, SEGMENT, 10);
+        sink.publish(events(1, 4));
+        sink.publish(events(5, 7));
+        sink.close();
+
+        MappedLogOrderEventSink restarted = new MappedLogOrderEventSink(DATASOURCE, directory, SEGMENT, 10);
+        List<OrderEvent> replayed = new ArrayList<>();
+        restarted.replay(replayed::add);
+        restarted.close();
+
+        assertEquals(events(1, 7), replayed);
+        assertTrue(Files.exists(directory.resolve("orders").resolve("orders-000003.log")));
+    }
+
+    @Test
+    void publish_WhenBatchIsRedeliveredAfterRestart_ShouldJournalItOnce() throws IOException {
+        MappedLogOrderEventSink sink = new MappedLogOrderEventSink(DATASOURCE, directory, SEGMENT, 3);
+        sink.publish(events(1, 3));
+        sink.publish(events(4, 5));
+        sink.close();
+
+        // the relay failed to delete the last batch and sends it again, together with a new event
+        MappedLogOrderEventSink restarted = new MappedLogOrderEventSink(DATASOURCE, directory, SEGMENT, 3);
+        restarted.publish(events(4, 6));
+        List<Long> replayed = new ArrayList<>();
+        restarted.replay(event -> replayed.add(event.eventId()));
+        restarted.close();
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), replayed);
+    }
+
+    @Test
+    void constructor_WithInMemoryDatabase_ShouldRefuseToStart() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+            new MappedLogOrderEventSink("jdbc:h2:mem:shopdb", directory, SEGMENT, 10));
+
+        assertTrue(exception.getMessage().startsWith("shop.outbox.sink=mmap needs a datasource that survives restarts"));
+        assertThrows(IllegalStateException.class, () -> new MappedLogOrderEventSink("", directory, SEGMENT, 10));
+    }
+
+    private static List<OrderEvent> events(long fromId, long toId) {
+        LocalDateTime occurredAt = LocalDateTime.of(2025, 3, 1, 12, 0);
+        return LongStream.rangeClosed(fromId, toId)
+            .mapToObj(id -> new OrderEvent(id, 100 + id, OrderEventType.STATUS_CHANGED, OrderStatus.COMPLETED,
+                occurredAt.plusSeconds(id)))
+            .toList();
+    }
+}
@@ -0,0 +1,76 @@
+package com.rohlik.shop.adapters.out.log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedAppendLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replay_AfterReopen_ShouldReturnRecordsInAppendOrder() throws IOException {
+        Path path = directory.resolve("test.log");
+        try (MappedAppendLog log = new MappedAppendLog(path, 1024)) {
+            assertTrue(log.append(utf8("first")));
+            assertTrue(log.append(utf8("second")));
+        }
+
+        try (MappedAppendLog log = new MappedAppendLog(path, 1024)) {
+            assertTrue(log.append(utf8("third")));
+            assertEquals(List.of("first", "second", "third"), read(log));
+        }
+    }
+
+    @Test
+    void append_WhenFull_ShouldRefuseWithoutWriting() throws IOException {
+        try (MappedAppendLog log = new MappedAppendLog(directory.resolve("small.log"), 20)) {
+            assertTrue(log.append(utf8("12345678")));
+            assertFalse(log.append(utf8("x")));
+            assertEquals(16, log.size());
+            assertEquals(List.of("12345678"), read(log));
+        }
+    }
+
+    @Test
+    void open_WithTornLastRecord_ShouldDropItAndAppendInItsPlace() throws IOException {
+        Path path = directory.resolve("torn.log");
+        try (MappedAppendLog log = new MappedAppendLog(path, 1024)) {
+            log.append(utf8("kept"));
+            log.append(utf8("torn"));
+        }
+        // corrupt the payload of the second record, as if the crash hit in the middle of it
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(12 + 8);
+            file.write('X');
+        }
+
+        try (MappedAppendLog log = new MappedAppendLog(path, 1024)) {
+            assertEquals(List.of("kept"), read(log));
+            log.append(utf8("next"));
+        }
+        try (MappedAppendLog log = new MappedAppendLog(path, 1024)) {
+            assertEquals(List.of("kept", "next"), read(log));
+        }
+    }
+
+    private static ByteBuffer utf8(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> read(MappedAppendLog log) {
+        List<String> records = new ArrayList<>();
+        log.replay(record -> records.add(StandardCharsets.UTF_8.decode(record).toString()));
+        return records;
+    }
+}
@@ -0,0 +1,231 @@
+package com.rohlik.shop.adapters.out.log;
+
+import com.rohlik.shop.adapters.out.persistence.JpaOrderRepository;
+import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderItemEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MappedLogOrderStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Autowired
+    private JpaOrderRepository jpaOrderRepository;
+
+    @Autowired
+    private JpaProductRepository jpaProductRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private MappedLogOrderStore orderStore;
+    private MappedLogOrderRepository orderRepository;
+    private MappedLogProductRepository productRepository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        open(DataSize.ofMegabytes(1));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        orderStore.close();
+        deleteAll();
+    }
+
+    @Test
+    void restore_IntoEmptyDatabase_ShouldBringBackCommittedOrdersAndStock() throws IOException {
+        ProductEntity milk = productRepository.save(product("Milk", 10));
+        OrderEntity cancelled = orderRepository.save(order(milk, 2));
+        cancelled.cancel();
+        orderRepository.save(cancelled);
+        OrderEntity expired = orderRepository.save(order(milk, 3));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            orderRepository.updateExpiredStatus(List.of(expired.getId()), OrderStatus.PENDING, OrderStatus.CANCELLED,
+                LocalDateTime.now()));
+        OrderEntity pending = orderRepository.save(order(milk, 1));
+        productRepository.adjustStockQuantities(Map.of(milk.getId(), -1));
+
+        // what a restart of the in-memory database leaves behind
+        restart(DataSize.ofMegabytes(1));
+
+        assertEquals(9, jdbcTemplate.queryForObject(
+            "select stock_quantity from product_entity where id = ?", Integer.class, milk.getId()));
+        assertEquals(Map.of(cancelled.getId(), "CANCELLED", expired.getId(), "CANCELLED", pending.getId(), "PENDING"),
+            statuses());
+        OrderEntity restored = jpaOrderRepository.findWithItemsById(pending.getId()).orElseThrow();
+        assertEquals(pending.getCreatedAt(), restored.getCreatedAt());
+        assertEquals(1, restored.getItems().get(0).getQuantity());
+        assertEquals(milk.getId(), restored.getItems().get(0).getProduct().getId());
+
+        Long nextOrderId = jdbcTemplate.queryForObject("select next value for shop_order_seq", Long.class);
+        assertTrue(nextOrderId > pending.getId());
+    }
+
+    @Test
+    void save_WhenTransactionRollsBack_ShouldNotJournalOrder() throws IOException {
+        ProductEntity milk = productRepository.save(product("Milk", 10));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            orderRepository.save(order(milk, 2));
+            status.setRollbackOnly();
+        });
+
+        restart(DataSize.ofMegabytes(1));
+
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from product_entity", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from shop_order", Integer.class));
+    }
+
+    @Test
+    void restore_WhenDatabaseKeptItsData_ShouldNotInsertAgain() throws IOException {
+        productRepository.save(product("Milk", 10));
+        orderStore.close();
+
+        orderStore = start(DataSize.ofMegabytes(1));
+
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from product_entity", Integer.class));
+    }
+
+    @Test
+    void restore_AfterRepoint_ShouldMoveOnlyItemsOfOrdersInThatStatus() throws IOException {
+        ProductEntity milk = productRepository.save(product("Milk", 10));
+        ProductEntity newMilk = productRepository.save(product("Milk 1l", 10));
+        OrderEntity pending = orderRepository.save(order(milk, 1));
+        OrderEntity cancelled = orderRepository.save(order(milk, 1));
+        cancelled.cancel();
+        orderRepository.save(cancelled);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            orderRepository.repointItems(milk, newMilk, new BigDecimal("19.90"), OrderStatus.PENDING));
+
+        restart(DataSize.ofMegabytes(1));
+
+        OrderItemEntity repointed = jpaOrderRepository.findWithItemsById(pending.getId()).orElseThrow().getItems().get(0);
+        assertEquals(newMilk.getId(), repointed.getProduct().getId());
+        assertEquals(new BigDecimal("19.90"), repointed.getPrice());
+        OrderItemEntity kept = jpaOrderRepository.findWithItemsById(cancelled.getId()).orElseThrow().getItems().get(0);
+        assertEquals(milk.getId(), kept.getProduct().getId());
+    }
+
+    @Test
+    void flush_WhenLogIsFull_ShouldCompactFromDatabaseAndAppendLaterRecords() throws IOException {
+        orderStore.close();
+        // an existing log keeps its size
+        Files.delete(directory.resolve("orders.log"));
+        open(DataSize.ofKilobytes(1));
+        ProductEntity milk = productRepository.save(product("Milk", 10));
+        OrderEntity order = orderRepository.save(order(milk, 1));
+        for (int i = 0; i < 60; i++) {
+            productRepository.adjustStockQuantities(Map.of(milk.getId(), 1));
+        }
+
+        orderStore.flush();
+        productRepository.adjustStockQuantities(Map.of(milk.getId(), 30));
+        restart(DataSize.ofKilobytes(1));
+
+        assertFalse(Files.exists(directory.resolve("orders.log.compact")));
+        assertEquals(100, jdbcTemplate.queryForObject(
+            "select stock_quantity from product_entity where id = ?", Integer.class, milk.getId()));
+        assertEquals(Map.of(order.getId(), "PENDING"), statuses());
+    }
+
+    @Test
+    void afterCommit_WhenJournalFails_ShouldNotThrowAndRewriteLogOnFlush() throws IOException {
+        ProductEntity milk = productRepository.save(product("Milk", 10));
+        OrderEntity order = new TransactionTemplate(transactionManager).execute(status -> {
+            OrderEntity saved = jpaOrderRepository.save(order(milk, 2));
+            orderStore.afterCommit(() -> {
+                throw new IllegalStateException("Disk is gone");
+            });
+            return saved;
+        });
+
+        orderStore.flush();
+        restart(DataSize.ofMegabytes(1));
+
+        assertEquals(Map.of(order.getId(), "PENDING"), statuses());
+    }
+
+    private void open(DataSize capacity) throws IOException {
+        orderStore = start(capacity);
+        orderRepository = new MappedLogOrderRepository(jpaOrderRepository, orderStore);
+        productRepository = new MappedLogProductRepository(jpaProductRepository, orderStore);
+    }
+
+    private MappedLogOrderStore start(DataSize capacity) throws IOException {
+        MappedLogOrderStore store = new MappedLogOrderStore(jdbcTemplate, transactionManager, directory, capacity);
+        store.restore();
+        return store;
+    }
+
+    private void restart(DataSize capacity) throws IOException {
+        orderStore.close();
+        deleteAll();
+        open(capacity);
+    }
+
+    private Map<Long, String> statuses() {
+        Map<Long, String> statuses = new HashMap<>();
+        jdbcTemplate.query("select id, status from shop_order",
+            (RowCallbackHandler) resultSet -> statuses.put(resultSet.getLong("id"), resultSet.getString("status")));
+        return statuses;
+    }
+
+    private void deleteAll() {
+        jdbcTemplate.update("delete from order_item_entity");
+        jdbcTemplate.update("delete from shop_order");
+        jdbcTemplate.update("delete from product_entity");
+    }
+
+    private static ProductEntity product(String name, int stockQuantity) {
+        ProductEntity product = new ProductEntity();
+        product.setName(name);
+        product.setPrice(new BigDecimal("29.90"));
+        product.setStockQuantity(stockQuantity);
+        return product;
+    }
+
+    private static OrderEntity order(ProductEntity product, int quantity) {
+        OrderEntity order = new OrderEntity();
+        order.setCreatedAt(LocalDateTime.of(2025, 3, 1, 12, 0, 0, 123_456_000));
+        order.setExpiresAt(order.getCreatedAt().plusMinutes(30));
+        order.setStatus(OrderStatus.PENDING);
+        OrderItemEntity item = new OrderItemEntity();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setPrice(product.getPrice());
+        order.addItem(item);
+        return order;
+    }
+}
@@ -0,0 +1,127 @@
+package com.rohlik.shop.adapters.out.log;
+
+import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.application.domain.ProductEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MappedLogStockStoreTest {
+
+    private static final String DATASOURCE = "jdbc:h2:file:./target/shopdb";
+
+    @TempDir
+    Path directory;
+
+    private JpaProductRepository productRepository = Mockito.mock(JpaProductRepository.class);
+
+    @Test
+    void loadLevels_AfterRestart_ShouldPreferLoggedLevelsOverCatalog() throws IOException {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, 10)));
+        MappedLogStockStore store = new MappedLogStockStore(productRepository, DATASOURCE, "jpa", directory, DataSize.ofKilobytes(1));
+        store.adjustLevels(Map.of(1L, -3));
+        store.adjustLevels(Map.of(1L, -2));
+        store.flush();
+        store.close();
+
+        List<JpaProductRepository.StockLevel> catalog = List.of(level(1L, 100), level(2L, 20));
+        when(productRepository.findActiveStockLevels()).thenReturn(catalog);
+        MappedLogStockStore restarted = new MappedLogStockStore(productRepository, DATASOURCE, "jpa", directory, DataSize.ofKilobytes(1));
+
+        assertEquals(Map.of(1L, 5, 2L, 20), restarted.loadLevels());
+        restarted.close();
+    }
+
+    @Test
+    void constructor_WithInMemoryDatabase_ShouldRefuseToStart() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+            new MappedLogStockStore(productRepository, "jdbc:h2:mem:shopdb", "jpa", directory, DataSize.ofKilobytes(1)));
+
+        assertTrue(exception.getMessage().startsWith("shop.persistence.stock-store=log needs a datasource that survives restarts"));
+        assertFalse(Files.exists(directory.resolve("stock.log")));
+    }
+
+    @Test
+    void constructor_WithInMemoryDatabaseAndJournaledOrders_ShouldStart() throws IOException {
+        MappedLogStockStore store = new MappedLogStockStore(productRepository, "jdbc:h2:mem:shopdb", "log", directory, DataSize.ofKilobytes(1));
+
+        assertTrue(Files.exists(directory.resolve("stock.log")));
+        store.close();
+    }
+
+    @Test
+    void findLevel_ForProductNotInLog_ShouldFallBackToCatalog() throws IOException {
+        when(productRepository.findById(3L)).thenReturn(Optional.of(product(3L, 12)));
+        MappedLogStockStore store = new MappedLogStockStore(productRepository, DATASOURCE, "jpa", directory, DataSize.ofKilobytes(1));
+
+        assertEquals(Optional.of(12), store.findLevel(3L));
+        store.adjustLevels(Map.of(3L, -8));
+        assertEquals(Optional.of(4), store.findLevel(3L));
+        // the lookup and the base of the adjustment, the log answers from then on
+        verify(productRepository, times(2)).findById(3L);
+        store.close();
+    }
+
+    @Test
+    void adjustLevel_WhenLogIsFull_ShouldCompactToLatestLevels() throws IOException {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, 0)));
+        when(productRepository.findById(2L)).thenReturn(Optional.of(product(2L, 100)));
+        // 20 bytes per record, room for five
+        MappedLogStockStore store = new MappedLogStockStore(productRepository, DATASOURCE, "jpa", directory, DataSize.ofBytes(100));
+        for (int i = 0; i < 12; i++) {
+            store.adjustLevels(Map.of(1L + i % 2, 1));
+        }
+        store.close();
+
+        assertFalse(Files.exists(directory.resolve("stock.log.compact")));
+        MappedLogStockStore restarted = new MappedLogStockStore(productRepository, DATASOURCE, "jpa", directory, DataSize.ofBytes(100));
+        assertEquals(Optional.of(6), restarted.findLevel(1L));
+        assertEquals(Optional.of(106), restarted.findLevel(2L));
+        restarted.close();
+    }
+
+    @Test
+    void adjustLevel_InsideTransaction_ShouldAppendOnlyAfterCommit() throws IOException {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, 10)));
+        MappedLogStockStore store = new MappedLogStockStore(productRepository, DATASOURCE, "jpa", directory, DataSize.ofKilobytes(1));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.adjustLevels(Map.of(1L, -4));
+            assertEquals(Optional.of(10), store.findLevel(1L));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(Optional.of(6), store.findLevel(1L));
+        store.close();
+    }
+
+    private static ProductEntity product(Long id, int stockQuantity) {
+        ProductEntity product = new ProductEntity();
+        product.setId(id);
+        product.setStockQuantity(stockQuantity);
+        return product;
+    }
+
+    private static JpaProductRepository.StockLevel level(Long id, int stockQuantity) {
+        JpaProductRepository.StockLevel level = Mockito.mock(JpaProductRepository.StockLevel.class);
+        when(level.getId()).thenReturn(id);
+        when(level.getStockQuantity()).thenReturn(stockQuantity);
+        return level;
+    }
+}
@@ -0,0 +1,122 @@
+package com.rohlik.shop.adapters.out.persistence;
+
+import com.rohlik.shop.application.domain.IdempotencyKeyEntity;
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderItemEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({DatabaseSnapshots.class, SimpleMeterRegistry.class})
+class DatabaseSnapshotsTest {
+
+    @TempDir
+    static Path directory;
+
+    @DynamicPropertySource
+    static void snapshotProperties(DynamicPropertyRegistry registry) {
+        registry.add("shop.persistence.snapshot.enabled", () -> "true");
+        registry.add("shop.persistence.snapshot.path", () -> directory.resolve("snapshot.bin").toString());
+    }
+
+    @Autowired
+    private DatabaseSnapshots snapshots;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void restore_ShouldBringBackRowsAndMoveSequencesPastThem() {
+        ProductEntity product = new ProductEntity();
+        product.setName("Milk");
+        product.setPrice(new BigDecimal("29.90"));
+        product.setStockQuantity(100);
+        entityManager.persist(product);
+
+        OrderEntity order = new OrderEntity();
+        order.setCreatedAt(LocalDateTime.of(2025, 3, 1, 12, 0, 0, 123_456_000));
+        order.setExpiresAt(order.getCreatedAt().plusMinutes(30));
+        order.setStatus(OrderStatus.PENDING);
+        OrderItemEntity item = new OrderItemEntity();
+        item.setProduct(product);
+        item.setQuantity(2);
+        item.setPrice(product.getPrice());
+        order.addItem(item);
+        entityManager.persist(order);
+        entityManager.flush();
+
+        snapshots.snapshot();
+        assertTrue(Files.exists(directory.resolve("snapshot.bin")));
+
+        jdbcTemplate.update("delete from order_item_entity");
+        jdbcTemplate.update("delete from shop_order");
+        jdbcTemplate.update("delete from product_entity");
+        entityManager.clear();
+
+        snapshots.restore();
+
+        Map<String, Object> restoredProduct = jdbcTemplate.queryForMap(
+            "select name, price, stock_quantity from product_entity where id = ?", product.getId());
+        assertEquals("Milk", restoredProduct.get("NAME"));
+        assertEquals(new BigDecimal("29.90"), restoredProduct.get("PRICE"));
+        assertEquals(100, restoredProduct.get("STOCK_QUANTITY"));
+
+        OrderEntity restoredOrder = entityManager.find(OrderEntity.class, order.getId());
+        assertEquals(OrderStatus.PENDING, restoredOrder.getStatus());
+        assertEquals(order.getCreatedAt(), restoredOrder.getCreatedAt());
+        assertEquals(1, restoredOrder.getItems().size());
+        assertEquals(2, restoredOrder.getItems().get(0).getQuantity());
+
+        Long nextProductId = jdbcTemplate.queryForObject("select next value for product_seq", Long.class);
+        assertTrue(nextProductId > product.getId());
+    }
+
+    @Test
+    void snapshot_ShouldKeepIdempotencyKeysAndStoredStock() {
+        ProductEntity product = new ProductEntity();
+        product.setName("Bread");
+        product.setPrice(new BigDecimal("39.90"));
+        product.setStockQuantity(100);
+        entityManager.persist(product);
+        entityManager.persist(new IdempotencyKeyEntity("checkout-1", "hash", 7L, LocalDateTime.of(2025, 3, 1, 12, 0)));
+        entityManager.flush();
+        // an order took stock, the stored level commits with it
+        jdbcTemplate.update("update product_entity set stock_quantity = stock_quantity - 3 where id = ?", product.getId());
+
+        snapshots.snapshot();
+
+        jdbcTemplate.update("delete from idempotency_key");
+        jdbcTemplate.update("delete from product_entity");
+        entityManager.clear();
+
+        snapshots.restore();
+
+        assertEquals(97, jdbcTemplate.queryForObject(
+            "select stock_quantity from product_entity where id = ?", Integer.class, product.getId()));
+        Map<String, Object> restoredKey = jdbcTemplate.queryForMap(
+            "select request_hash, order_id from idempotency_key where idempotency_key = ?", "checkout-1");
+        assertEquals("hash", restoredKey.get("REQUEST_HASH"));
+        assertEquals(7L, restoredKey.get("ORDER_ID"));
+    }
+}
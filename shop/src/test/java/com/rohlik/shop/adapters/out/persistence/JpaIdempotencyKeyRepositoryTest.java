@@ -0,0 +1,42 @@
+package com.rohlik.shop.adapters.out.persistence;
+
+import com.rohlik.shop.application.domain.IdempotencyKeyEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class JpaIdempotencyKeyRepositoryTest {
+
+    @Autowired
+    private JpaIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Test
+    void saveAndFlush_WhenKeyExists_ShouldFailInsteadOfOverwriting() {
+        idempotencyKeyRepository.saveAndFlush(new IdempotencyKeyEntity("key-1", "hash-1", 1L, LocalDateTime.now()));
+        testEntityManager.clear();
+
+        assertThrows(DataIntegrityViolationException.class, () ->
+            idempotencyKeyRepository.saveAndFlush(new IdempotencyKeyEntity("key-1", "hash-2", 2L, LocalDateTime.now())));
+    }
+
+    @Test
+    void deleteCreatedBefore_ShouldRemoveOnlyExpiredKeys() {
+        idempotencyKeyRepository.saveAndFlush(new IdempotencyKeyEntity("old", "hash", 1L, LocalDateTime.now().minusDays(2)));
+        idempotencyKeyRepository.saveAndFlush(new IdempotencyKeyEntity("new", "hash", 2L, LocalDateTime.now()));
+
+        assertEquals(1, idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minusDays(1)));
+        testEntityManager.clear();
+        assertTrue(idempotencyKeyRepository.findById("old").isEmpty());
+        assertTrue(idempotencyKeyRepository.findById("new").isPresent());
+    }
+}
@@ -0,0 +1,182 @@
+package com.rohlik.shop.adapters.out.persistence;
+
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderItemEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class JpaOrderRepositoryTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+    @Autowired
+    private JpaOrderRepository orderRepository;
+
+    @Autowired
+    private JpaProductRepository productRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setUp() {
+        product = new ProductEntity();
+        product.setName("Milk");
+        product.setPrice(new BigDecimal("29.90"));
+        product.setStockQuantity(100);
+        product = productRepository.save(product);
+    }
+
+    @Test
+    void findPage_ShouldWalkAllOrdersWithKeyset() {
+        // two orders share a timestamp so that the id tie-breaker is exercised
+        List<Long> ids = List.of(
+            save(BASE, OrderStatus.PENDING),
+            save(BASE.plusMinutes(1), OrderStatus.PENDING),
+            save(BASE.plusMinutes(1), OrderStatus.COMPLETED),
+            save(BASE.plusMinutes(2), OrderStatus.CANCELLED),
+            save(BASE.plusMinutes(3), OrderStatus.PENDING));
+
+        List<OrderEntity> first = orderRepository.findPage(null, null, null, null, null, PageRequest.of(0, 2));
+        OrderEntity last = first.get(1);
+        List<OrderEntity> second = orderRepository.findPage(null, null, null,
+            last.getCreatedAt(), last.getId(), PageRequest.of(0, 2));
+        last = second.get(1);
+        List<OrderEntity> third = orderRepository.findPage(null, null, null,
+            last.getCreatedAt(), last.getId(), PageRequest.of(0, 2));
+
+        List<Long> walked = Stream.of(first, second, third).flatMap(List::stream)
+            .map(OrderEntity::getId).collect(Collectors.toList());
+        assertEquals(List.of(ids.get(4), ids.get(3), ids.get(2), ids.get(1), ids.get(0)), walked);
+    }
+
+    @Test
+    void findPage_ShouldApplyStatusAndDateRangeFilters() {
+        save(BASE, OrderStatus.PENDING);
+        Long expected = save(BASE.plusMinutes(5), OrderStatus.PENDING);
+        save(BASE.plusMinutes(6), OrderStatus.COMPLETED);
+        save(BASE.plusMinutes(30), OrderStatus.PENDING);
+
+        List<OrderEntity> page = orderRepository.findPage(OrderStatus.PENDING, BASE.plusMinutes(1),
+            BASE.plusMinutes(10), null, null, PageRequest.of(0, 10));
+
+        assertEquals(List.of(expected), page.stream().map(OrderEntity::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void streamFilteredItemRows_ShouldReturnItemsOfMatchingOrdersNewestFirst() {
+        Long first = save(BASE, OrderStatus.PENDING);
+        save(BASE.plusMinutes(1), OrderStatus.COMPLETED);
+        Long third = save(BASE.plusMinutes(2), OrderStatus.PENDING);
+
+        try (Stream<JpaOrderRepository.OrderItemRow> rows = orderRepository.streamFilteredItemRows(OrderStatus.PENDING, null, null)) {
+            List<JpaOrderRepository.OrderItemRow> matching = rows.toList();
+            assertEquals(List.of(third, first), matching.stream().map(JpaOrderRepository.OrderItemRow::getOrderId).toList());
+            assertEquals("Milk", matching.get(0).getProductName());
+        }
+    }
+
+    @Test
+    void streamItemRows_ShouldReturnItemsAfterIdInOrderIdOrder() {
+        Long first = save(BASE, OrderStatus.PENDING);
+        Long second = save(BASE.plusMinutes(1), OrderStatus.COMPLETED);
+        Long third = save(BASE.plusMinutes(2), OrderStatus.PENDING);
+        Long fourth = save(BASE.plusMinutes(30), OrderStatus.PENDING);
+
+        try (Stream<JpaOrderRepository.OrderItemRow> rows = orderRepository.streamItemRows(OrderStatus.PENDING,
+                null, BASE.plusMinutes(10), first)) {
+            List<JpaOrderRepository.OrderItemRow> matching = rows.toList();
+            assertEquals(List.of(third), matching.stream().map(JpaOrderRepository.OrderItemRow::getOrderId).toList());
+            assertEquals("Milk", matching.get(0).getProductName());
+            assertEquals(0, new BigDecimal("29.90").compareTo(matching.get(0).getPrice()));
+        }
+        try (Stream<JpaOrderRepository.OrderItemRow> rows = orderRepository.streamItemRows(null, null, null, 0)) {
+            assertEquals(List.of(first, second, third, fourth),
+                rows.map(JpaOrderRepository.OrderItemRow::getOrderId).toList());
+        }
+    }
+
+    @Test
+    void sumSalesByProductAndStatus_ShouldAggregateItemsPerStatus() {
+        save(BASE, OrderStatus.PENDING);
+        save(BASE.plusMinutes(1), OrderStatus.PENDING);
+        save(BASE.plusMinutes(2), OrderStatus.COMPLETED);
+        save(BASE.plusMinutes(3), OrderStatus.CANCELLED);
+
+        Map<OrderStatus, JpaOrderRepository.ProductSales> sales = orderRepository.sumSalesByProductAndStatus().stream()
+            .collect(Collectors.toMap(JpaOrderRepository.ProductSales::getStatus, Function.identity()));
+
+        assertEquals(3, sales.size());
+        assertEquals(product.getId(), sales.get(OrderStatus.PENDING).getProductId());
+        assertEquals(2L, sales.get(OrderStatus.PENDING).getQuantity());
+        assertEquals(2L, sales.get(OrderStatus.PENDING).getOrders());
+        assertEquals(1L, sales.get(OrderStatus.COMPLETED).getQuantity());
+        assertEquals(0, new BigDecimal("29.90").compareTo(sales.get(OrderStatus.COMPLETED).getRevenue()));
+    }
+
+    @Test
+    void existsItemOfProduct_ShouldOnlySeeOrdersInStatus() {
+        save(BASE, OrderStatus.COMPLETED);
+        save(BASE.plusMinutes(1), OrderStatus.CANCELLED);
+
+        assertFalse(orderRepository.existsItemOfProduct(product.getId(), OrderStatus.PENDING));
+
+        save(BASE.plusMinutes(2), OrderStatus.PENDING);
+
+        assertTrue(orderRepository.existsItemOfProduct(product.getId(), OrderStatus.PENDING));
+    }
+
+    @Test
+    void repointItems_ShouldMoveOnlyPendingItemsToNewProduct() {
+        Long pending = save(BASE, OrderStatus.PENDING);
+        Long completed = save(BASE.plusMinutes(1), OrderStatus.COMPLETED);
+        ProductEntity newVersion = new ProductEntity();
+        newVersion.setName("Milk");
+        newVersion.setPrice(new BigDecimal("31.90"));
+        newVersion.setStockQuantity(100);
+        newVersion = productRepository.save(newVersion);
+
+        int updated = orderRepository.repointItems(product, newVersion, newVersion.getPrice(), OrderStatus.PENDING);
+        entityManager.clear();
+
+        assertEquals(1, updated);
+        OrderItemEntity pendingItem = orderRepository.findWithItemsById(pending).orElseThrow().getItems().get(0);
+        OrderItemEntity completedItem = orderRepository.findWithItemsById(completed).orElseThrow().getItems().get(0);
+        assertEquals(newVersion.getId(), pendingItem.getProduct().getId());
+        assertEquals(0, new BigDecimal("31.90").compareTo(pendingItem.getPrice()));
+        assertEquals(product.getId(), completedItem.getProduct().getId());
+        assertEquals(0, new BigDecimal("29.90").compareTo(completedItem.getPrice()));
+    }
+
+    private Long save(LocalDateTime createdAt, OrderStatus status) {
+        OrderEntity order = new OrderEntity();
+        order.setCreatedAt(createdAt);
+        order.setExpiresAt(createdAt.plusMinutes(30));
+        order.setStatus(status);
+        OrderItemEntity item = new OrderItemEntity();
+        item.setProduct(product);
+        item.setQuantity(1);
+        item.setPrice(product.getPrice());
+        order.addItem(item);
+        return orderRepository.save(order).getId();
+    }
+}
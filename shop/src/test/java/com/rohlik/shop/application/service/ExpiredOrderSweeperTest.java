@@ -0,0 +1,157 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.out.persistence.JpaOrderOutboxRepository;
+import com.rohlik.shop.adapters.out.persistence.JpaOrderRepository;
+import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.adapters.out.persistence.JpaStockStore;
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderEventType;
+import com.rohlik.shop.application.domain.OrderItemEntity;
+import com.rohlik.shop.application.domain.OrderOutboxEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({ExpiredOrderSweeper.class, StockReservationLedger.class, JpaStockStore.class, ProductLockManager.class, OrderOutbox.class, LiveUpdateBroadcaster.class,
+    SalesAggregates.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "shop.orders.expiry-sweep.chunk-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ExpiredOrderSweeperTest {
+
+    @Autowired
+    private ExpiredOrderSweeper sweeper;
+
+    @Autowired
+    private StockReservationLedger stockLedger;
+
+    @Autowired
+    private JpaOrderRepository orderRepository;
+
+    @Autowired
+    private JpaProductRepository productRepository;
+
+    @Autowired
+    private JpaOrderOutboxRepository outboxRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ProductEntity milk;
+    private ProductEntity bread;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        milk = productRepository.save(product("Milk", 10));
+        bread = productRepository.save(product("Bread", 10));
+        stockLedger.track(milk.getId(), 10);
+        stockLedger.track(bread.getId(), 10);
+    }
+
+    @Test
+    void sweep_ShouldCancelExpiredOrdersAndReturnStockPerProduct() {
+        OrderEntity first = orderRepository.save(order(OrderStatus.PENDING, -5, 2, 1));
+        OrderEntity second = orderRepository.save(order(OrderStatus.PENDING, -3, 3, 0));
+        OrderEntity third = orderRepository.save(order(OrderStatus.PENDING, -1, 1, 4));
+        OrderEntity notExpired = orderRepository.save(order(OrderStatus.PENDING, 30, 1, 1));
+        OrderEntity completed = orderRepository.save(order(OrderStatus.COMPLETED, -5, 1, 1));
+        stockLedger.reserve(Map.of(milk.getId(), 7, bread.getId(), 7));
+
+        sweeper.sweep();
+
+        assertEquals(OrderStatus.CANCELLED, status(first));
+        assertEquals(OrderStatus.CANCELLED, status(second));
+        assertEquals(OrderStatus.CANCELLED, status(third));
+        assertEquals(OrderStatus.PENDING, status(notExpired));
+        assertEquals(OrderStatus.COMPLETED, status(completed));
+        assertEquals(9, stockLedger.available(milk.getId()));
+        assertEquals(8, stockLedger.available(bread.getId()));
+        assertEquals(3, meterRegistry.get("shop.orders.expired").counter().count());
+        assertEquals(2, meterRegistry.get("shop.orders.expiry.chunk").timer().count());
+        assertEquals(List.of(first.getId(), second.getId(), third.getId()), outboxRepository.findAll().stream()
+            .filter(event -> event.getEventType() == OrderEventType.EXPIRED)
+            .map(OrderOutboxEntity::getOrderId)
+            .sorted()
+            .toList());
+    }
+
+    @Test
+    void cancel_WhenOrderIsNoLongerPending_ShouldRollBackWholeChunk() {
+        OrderEntity pending = orderRepository.save(order(OrderStatus.PENDING, -5, 2, 0));
+        OrderEntity completed = orderRepository.save(order(OrderStatus.COMPLETED, -5, 1, 0));
+
+        assertThrows(OptimisticLockingFailureException.class, () ->
+            sweeper.cancel(List.of(pending.getId(), completed.getId()), LocalDateTime.now())
+        );
+
+        assertEquals(OrderStatus.PENDING, status(pending));
+        assertEquals(10, stockLedger.available(milk.getId()));
+        assertEquals(0, outboxRepository.count());
+    }
+
+    @Test
+    void cancel_WhenExpiryWasExtended_ShouldNotCancelOrder() {
+        OrderEntity extended = orderRepository.save(order(OrderStatus.PENDING, 10, 2, 0));
+
+        assertThrows(OptimisticLockingFailureException.class, () ->
+            sweeper.cancel(List.of(extended.getId()), LocalDateTime.now())
+        );
+
+        assertEquals(OrderStatus.PENDING, status(extended));
+        assertEquals(0, outboxRepository.count());
+    }
+
+    private OrderStatus status(OrderEntity order) {
+        return orderRepository.findById(order.getId()).orElseThrow().getStatus();
+    }
+
+    private ProductEntity product(String name, int stockQuantity) {
+        ProductEntity product = new ProductEntity();
+        product.setName(name);
+        product.setPrice(new BigDecimal("10.00"));
+        product.setStockQuantity(stockQuantity);
+        return product;
+    }
+
+    private OrderEntity order(OrderStatus status, int expiresInMinutes, int milkQuantity, int breadQuantity) {
+        OrderEntity order = new OrderEntity();
+        order.setCreatedAt(LocalDateTime.now().minusMinutes(30));
+        order.setExpiresAt(LocalDateTime.now().plusMinutes(expiresInMinutes));
+        order.setStatus(status);
+        if (milkQuantity > 0) {
+            order.addItem(item(milk, milkQuantity));
+        }
+        if (breadQuantity > 0) {
+            order.addItem(item(bread, breadQuantity));
+        }
+        return order;
+    }
+
+    private OrderItemEntity item(ProductEntity product, int quantity) {
+        OrderItemEntity item = new OrderItemEntity();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setPrice(product.getPrice());
+        return item;
+    }
+}
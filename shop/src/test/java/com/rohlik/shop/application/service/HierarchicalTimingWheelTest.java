@@ -0,0 +1,78 @@
+package com.rohlik.shop.application.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    private HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(10, 8, START);
+
+    @Test
+    void advance_ShouldFireKeyAtItsDeadline() {
+        wheel.schedule(1L, START + 35);
+
+        assertTrue(wheel.advance(START + 30).isEmpty());
+        assertEquals(List.of(1L), wheel.advance(START + 40));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_ShouldNeverFireBeforeDeadline() {
+        long deadline = START + 5 * 60_000 + 3;
+        wheel.schedule(1L, deadline);
+
+        List<Long> fired = new ArrayList<>();
+        long firedAt = -1;
+        for (long now = START; now <= deadline + 10 && fired.isEmpty(); now += 10) {
+            fired.addAll(wheel.advance(now));
+            firedAt = now;
+        }
+
+        assertEquals(List.of(1L), fired);
+        assertTrue(firedAt >= deadline);
+        assertTrue(firedAt - deadline < 10);
+    }
+
+    @Test
+    void advance_ShouldCascadeKeysFromOverflowWheels() {
+        wheel.schedule(1L, START + 75);
+        wheel.schedule(2L, START + 640);
+        wheel.schedule(3L, START + 5_000);
+
+        assertEquals(List.of(1L), wheel.advance(START + 80));
+        assertEquals(List.of(2L), wheel.advance(START + 640));
+        assertTrue(wheel.advance(START + 4_990).isEmpty());
+        assertEquals(List.of(3L), wheel.advance(START + 5_000));
+    }
+
+    @Test
+    void cancel_ShouldPreventFiring() {
+        wheel.schedule(1L, START + 20);
+        wheel.cancel(1L);
+
+        assertTrue(wheel.advance(START + 100).isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void schedule_ShouldReplaceExistingDeadline() {
+        wheel.schedule(1L, START + 20);
+        wheel.schedule(1L, START + 500);
+
+        assertTrue(wheel.advance(START + 490).isEmpty());
+        assertEquals(List.of(1L), wheel.advance(START + 500));
+    }
+
+    @Test
+    void schedule_WhenDeadlineHasPassed_ShouldFireOnNextAdvance() {
+        wheel.schedule(1L, START - 1_000);
+
+        assertEquals(List.of(1L), wheel.advance(START));
+    }
+}
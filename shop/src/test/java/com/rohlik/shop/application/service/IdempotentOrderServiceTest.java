@@ -0,0 +1,116 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderItemDTO;
+import com.rohlik.shop.application.domain.IdempotencyKeyEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdempotentOrderServiceTest {
+
+    private final OrderService orderService = Mockito.mock(OrderService.class);
+    private final IdempotencyKeyRepository idempotencyKeyRepository = Mockito.mock(IdempotencyKeyRepository.class);
+    private final PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    private final IdempotentOrderService idempotentOrderService = new IdempotentOrderService(orderService,
+        idempotencyKeyRepository, transactionManager, new SimpleMeterRegistry(), Duration.ofHours(24), 100, Duration.ofSeconds(5));
+
+    private final OrderDTO request = new OrderDTO(null, null, null, null,
+        List.of(new OrderItemDTO(null, 1L, null, 2, null)), null);
+    private final OrderDTO created = new OrderDTO(7L, LocalDateTime.now(), LocalDateTime.now().plusMinutes(30),
+        OrderStatus.PENDING, List.of(new OrderItemDTO(1L, 1L, "Test Product", 2, new BigDecimal("10.00"))), 0L);
+
+    {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(idempotencyKeyRepository.findById(any())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void createOrder_WhenKeyIsReplayed_ShouldCreateOrderOnce() {
+        when(orderService.createOrder(request)).thenReturn(created);
+
+        OrderDTO first = idempotentOrderService.createOrder("key-1", request);
+        OrderDTO replay = idempotentOrderService.createOrder("key-1", request);
+
+        assertSame(first, replay);
+        verify(orderService, times(1)).createOrder(request);
+        verify(idempotencyKeyRepository).saveAndFlush(any(IdempotencyKeyEntity.class));
+    }
+
+    @Test
+    void createOrder_WhenKeyIsStored_ShouldReplayPersistedOrder() {
+        when(orderService.createOrder(request)).thenReturn(created);
+        idempotentOrderService.createOrder("key-0", request);
+        ArgumentCaptor<IdempotencyKeyEntity> saved = ArgumentCaptor.forClass(IdempotencyKeyEntity.class);
+        verify(idempotencyKeyRepository).saveAndFlush(saved.capture());
+        IdempotencyKeyEntity stored = new IdempotencyKeyEntity("key-1", saved.getValue().getRequestHash(), 7L, LocalDateTime.now());
+        when(idempotencyKeyRepository.findById("key-1")).thenReturn(Optional.of(stored));
+        when(orderService.getOrderById(7L)).thenReturn(created);
+
+        assertSame(created, idempotentOrderService.createOrder("key-1", request));
+        verify(orderService, times(1)).createOrder(request);
+    }
+
+    @Test
+    void createOrder_WhenKeyIsReusedForDifferentOrder_ShouldThrowConflict() {
+        when(orderService.createOrder(request)).thenReturn(created);
+        idempotentOrderService.createOrder("key-1", request);
+        OrderDTO other = new OrderDTO(null, null, null, null, List.of(new OrderItemDTO(null, 1L, null, 3, null)), null);
+
+        assertThrows(IdempotencyConflictException.class, () -> idempotentOrderService.createOrder("key-1", other));
+    }
+
+    @Test
+    void createOrder_WhenDuplicateIsInFlight_ShouldWaitForFirstResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderService.createOrder(request)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return created;
+        });
+
+        CompletableFuture<OrderDTO> first = CompletableFuture.supplyAsync(() -> idempotentOrderService.createOrder("key-1", request));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<OrderDTO> duplicate = CompletableFuture.supplyAsync(() -> idempotentOrderService.createOrder("key-1", request));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertSame(created, first.get(5, TimeUnit.SECONDS));
+        assertSame(created, duplicate.get(5, TimeUnit.SECONDS));
+        verify(orderService, times(1)).createOrder(request);
+    }
+
+    @Test
+    void createOrder_WhenFirstAttemptFails_ShouldRunAgainOnRetry() {
+        when(orderService.createOrder(request))
+            .thenThrow(new IllegalStateException("Insufficient stock for product with id: 1"))
+            .thenReturn(created);
+
+        assertThrows(IllegalStateException.class, () -> idempotentOrderService.createOrder("key-1", request));
+        assertSame(created, idempotentOrderService.createOrder("key-1", request));
+        verify(orderService, times(2)).createOrder(request);
+    }
+
+    @Test
+    void createOrder_WhenKeyIsBlank_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> idempotentOrderService.createOrder(" ", request));
+    }
+}
@@ -0,0 +1,168 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.LiveUpdateDTO;
+import com.rohlik.shop.application.domain.OrderStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveUpdateBroadcasterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LiveUpdateBroadcaster broadcaster = new LiveUpdateBroadcaster(meterRegistry, 4, 2);
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void publish_ShouldDeliverUpdatesInOrder() throws InterruptedException {
+        List<LiveUpdateDTO> received = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(10);
+        broadcaster.subscribe(update -> {
+            received.add(update);
+            done.countDown();
+        }, () -> {});
+
+        // fewer than the buffer size ahead at any time
+        for (int i = 0; i < 10; i++) {
+            broadcaster.publish(LiveUpdateDTO.productStock(1L, i));
+            if (i % 3 == 2) {
+                awaitSize(received, i + 1);
+            }
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(IntStream.range(0, 10).boxed().toList(),
+            received.stream().map(LiveUpdateDTO::stockQuantity).toList());
+    }
+
+    @Test
+    void publish_WhenSubscriberFallsBehind_ShouldDisconnectOnlyThatSubscriber() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch overflowed = new CountDownLatch(1);
+        LiveUpdateBroadcaster.Subscription slow = broadcaster.subscribe(update -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, overflowed::countDown);
+        List<LiveUpdateDTO> received = new CopyOnWriteArrayList<>();
+        broadcaster.subscribe(received::add, () -> fail("fast subscriber must not be dropped"));
+
+        for (long orderId = 1; orderId <= 3; orderId++) {
+            broadcaster.publish(LiveUpdateDTO.orderStatus(orderId, OrderStatus.COMPLETED));
+            awaitSize(received, (int) orderId);
+        }
+        // the slow one holds the first update, its buffer takes four more
+        for (long orderId = 4; orderId <= 7; orderId++) {
+            broadcaster.publish(LiveUpdateDTO.orderStatus(orderId, OrderStatus.COMPLETED));
+            awaitSize(received, (int) orderId);
+        }
+
+        assertTrue(overflowed.await(5, TimeUnit.SECONDS));
+        assertTrue(slow.isClosed());
+        blocked.countDown();
+        assertEquals(7, received.size());
+        assertEquals(1, meterRegistry.get("shop.live-updates.disconnected").counter().count());
+        assertEquals(1, meterRegistry.get("shop.live-updates.subscribers").gauge().value());
+    }
+
+    @Test
+    void publish_WhenSubscribersStall_ShouldKeepDeliveringToOthers() throws InterruptedException {
+        SimpleMeterRegistry wideRegistry = new SimpleMeterRegistry();
+        LiveUpdateBroadcaster wide = new LiveUpdateBroadcaster(wideRegistry, 4, 4);
+        CountDownLatch stalled = new CountDownLatch(1);
+        try {
+            // more stalled writers than the old shared dispatcher had threads
+            for (int i = 0; i < 3; i++) {
+                wide.subscribe(update -> {
+                    try {
+                        stalled.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, () -> {});
+            }
+            List<LiveUpdateDTO> received = new CopyOnWriteArrayList<>();
+            wide.subscribe(received::add, () -> fail("fast subscriber must not be dropped"));
+
+            for (int i = 0; i < 20; i++) {
+                wide.publish(LiveUpdateDTO.productStock(1L, i));
+                awaitSize(received, i + 1);
+            }
+
+            // the stalled ones overflowed and were dropped, each on its own thread
+            assertEquals(20, received.size());
+            assertEquals(1, wideRegistry.get("shop.live-updates.subscribers").gauge().value());
+            assertEquals(3, wideRegistry.get("shop.live-updates.disconnected").counter().count());
+        } finally {
+            stalled.countDown();
+            wide.shutdown();
+        }
+    }
+
+    @Test
+    void subscribe_WhenLimitReached_ShouldReject() {
+        broadcaster.subscribe(update -> {}, () -> {});
+        LiveUpdateBroadcaster.Subscription second = broadcaster.subscribe(update -> {}, () -> {});
+
+        assertThrows(RejectedExecutionException.class, () -> broadcaster.subscribe(update -> {}, () -> {}));
+
+        second.close();
+        assertDoesNotThrow(() -> broadcaster.subscribe(update -> {}, () -> {}));
+    }
+
+    @Test
+    void subscribe_WhenManyArriveAtOnce_ShouldAdmitOnlyUpToLimit() throws Exception {
+        SimpleMeterRegistry wideRegistry = new SimpleMeterRegistry();
+        LiveUpdateBroadcaster wide = new LiveUpdateBroadcaster(wideRegistry, 4, 10);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> attempts = IntStream.range(0, 64)
+                .mapToObj(i -> executor.submit(() -> {
+                    start.await();
+                    try {
+                        wide.subscribe(update -> {}, () -> {});
+                        return true;
+                    } catch (RejectedExecutionException ex) {
+                        return false;
+                    }
+                }))
+                .toList();
+            start.countDown();
+
+            int admitted = 0;
+            for (Future<Boolean> attempt : attempts) {
+                admitted += attempt.get(5, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(10, admitted);
+            assertEquals(10, wideRegistry.get("shop.live-updates.subscribers").gauge().value());
+        } finally {
+            executor.shutdownNow();
+            wide.shutdown();
+        }
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (list.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.out.persistence.JpaOrderRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OrderExpirySchedulerTest {
+
+    private final ExpiredOrderSweeper sweeper = Mockito.mock(ExpiredOrderSweeper.class);
+    private final OrderExpiryScheduler scheduler = new OrderExpiryScheduler(Mockito.mock(JpaOrderRepository.class),
+        sweeper, 100, 64, 2);
+
+    @Test
+    void tick_ShouldCancelOverdueOrdersInChunks() {
+        for (long orderId = 1; orderId <= 5; orderId++) {
+            scheduler.schedule(orderId, LocalDateTime.now().minusMinutes(1));
+        }
+
+        scheduler.tick();
+
+        verify(sweeper).cancel(eq(List.of(1L, 2L)), any());
+        verify(sweeper).cancel(eq(List.of(3L, 4L)), any());
+        verify(sweeper).cancel(eq(List.of(5L)), any());
+        verifyNoMoreInteractions(sweeper);
+    }
+
+    @Test
+    void tick_WhenChunkConflicts_ShouldRetryOnlyThatChunkOneByOne() {
+        for (long orderId = 1; orderId <= 4; orderId++) {
+            scheduler.schedule(orderId, LocalDateTime.now().minusMinutes(1));
+        }
+        when(sweeper.cancel(eq(List.of(1L, 2L)), any())).thenThrow(new OptimisticLockingFailureException("extended"));
+
+        scheduler.tick();
+
+        verify(sweeper).cancel(eq(List.of(1L)), any());
+        verify(sweeper).cancel(eq(List.of(2L)), any());
+        verify(sweeper).cancel(eq(List.of(3L, 4L)), any());
+        verify(sweeper, never()).cancel(eq(List.of(3L)), any());
+    }
+}
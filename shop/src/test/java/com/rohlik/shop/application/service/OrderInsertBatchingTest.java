@@ -0,0 +1,104 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderItemDTO;
+import com.rohlik.shop.adapters.in.web.mapper.OrderItemMapper;
+import com.rohlik.shop.adapters.in.web.mapper.OrderMapper;
+import com.rohlik.shop.application.domain.ProductEntity;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({OrderService.class, OrderMapper.class, OrderItemMapper.class})
+class OrderInsertBatchingTest {
+
+    private static final int BASKET_SIZE = 40;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private StockReservationLedger stockLedger;
+
+    @MockBean
+    private OrderExpiryScheduler expiryScheduler;
+
+    @MockBean
+    private OrderOutbox orderOutbox;
+
+    @MockBean
+    private SalesAggregates salesAggregates;
+
+    private Statistics statistics;
+    private List<OrderItemDTO> basket;
+
+    @BeforeEach
+    void setUp() {
+        basket = new ArrayList<>();
+        for (int i = 0; i < BASKET_SIZE; i++) {
+            ProductEntity product = new ProductEntity();
+            product.setName("Product " + i);
+            product.setPrice(new BigDecimal("10.00"));
+            product.setStockQuantity(100);
+            basket.add(new OrderItemDTO(null, testEntityManager.persist(product).getId(), null, 1, null));
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void createOrder_ShouldInsertLargeBasketInConstantRoundTrips() {
+        OrderDTO order = orderService.createOrder(new OrderDTO(null, null, null, null, basket, null));
+        testEntityManager.flush();
+
+        assertEquals(BASKET_SIZE, order.items().size());
+        assertEquals(BASKET_SIZE + 1, statistics.getEntityInsertCount());
+        // products, order and item sequences, order insert and a single batched item insert,
+        // with IDENTITY ids this used to be one statement per product plus one per row
+        assertTrue(statistics.getPrepareStatementCount() <= 6,
+            "Expected at most 6 statements but was " + statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void createOrder_ShouldTakeFewerStatementsThanWithoutJdbcBatching() {
+        long batched = createOrderStatements(null);
+        long unbatched = createOrderStatements(1);
+
+        // without batching the order and every item insert are a statement and a round trip of their own
+        assertTrue(batched <= 6, "Expected at most 6 statements but was " + batched);
+        assertTrue(unbatched >= BASKET_SIZE + 1, "Expected a statement per row but was " + unbatched);
+    }
+
+    private long createOrderStatements(Integer jdbcBatchSize) {
+        testEntityManager.getEntityManager().unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+        statistics.clear();
+        orderService.createOrder(new OrderDTO(null, null, null, null, basket, null));
+        testEntityManager.flush();
+        testEntityManager.clear();
+        return statistics.getPrepareStatementCount();
+    }
+}
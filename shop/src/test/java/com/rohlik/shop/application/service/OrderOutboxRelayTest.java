@@ -0,0 +1,71 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.out.events.InMemoryOrderEventSink;
+import com.rohlik.shop.adapters.out.persistence.JpaOrderOutboxRepository;
+import com.rohlik.shop.application.domain.OrderEvent;
+import com.rohlik.shop.application.domain.OrderEventType;
+import com.rohlik.shop.application.domain.OrderStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({OrderOutbox.class, LiveUpdateBroadcaster.class, SimpleMeterRegistry.class})
+class OrderOutboxRelayTest {
+
+    @Autowired
+    private OrderOutbox orderOutbox;
+
+    @Autowired
+    private JpaOrderOutboxRepository outboxRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final InMemoryOrderEventSink sink = new InMemoryOrderEventSink();
+
+    @BeforeEach
+    void setUp() {
+        orderOutbox.record(1L, OrderEventType.CREATED, OrderStatus.PENDING);
+        orderOutbox.record(2L, OrderEventType.CREATED, OrderStatus.PENDING);
+        orderOutbox.record(1L, OrderEventType.COMPLETED, OrderStatus.COMPLETED);
+        orderOutbox.recordAll(List.of(2L, 3L), OrderEventType.EXPIRED, OrderStatus.CANCELLED);
+        // the relay normally sees committed rows, its read-only query would not flush them
+        outboxRepository.flush();
+    }
+
+    @Test
+    void relay_ShouldPublishAllEventsInOutboxOrderAndDeleteThem() {
+        new OrderOutboxRelay(outboxRepository, sink, meterRegistry, 2).relay();
+
+        List<OrderEvent> events = sink.events();
+        assertEquals(5, events.size());
+        assertEquals(List.of(1L, 2L, 1L, 2L, 3L), events.stream().map(OrderEvent::orderId).toList());
+        assertEquals(List.of(OrderEventType.CREATED, OrderEventType.COMPLETED),
+            events.stream().filter(event -> event.orderId() == 1L).map(OrderEvent::type).toList());
+        assertEquals(events.stream().map(OrderEvent::eventId).sorted().toList(),
+            events.stream().map(OrderEvent::eventId).toList());
+        assertEquals(0, outboxRepository.count());
+        assertEquals(5, meterRegistry.get("shop.outbox.published").counter().count());
+    }
+
+    @Test
+    void relay_WhenSinkFails_ShouldKeepEventsForNextRun() {
+        OrderOutboxRelay failingRelay = new OrderOutboxRelay(outboxRepository, events -> {
+            throw new IllegalStateException("broker unavailable");
+        }, meterRegistry, 2);
+
+        failingRelay.relay();
+
+        assertEquals(5, outboxRepository.count());
+        assertEquals(1, meterRegistry.get("shop.outbox.failures").counter().count());
+    }
+}
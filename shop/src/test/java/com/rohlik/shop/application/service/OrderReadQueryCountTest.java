@@ -0,0 +1,132 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderFilterDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderPageDTO;
+import com.rohlik.shop.adapters.in.web.mapper.OrderItemMapper;
+import com.rohlik.shop.adapters.in.web.mapper.OrderMapper;
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderItemEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({OrderService.class, OrderMapper.class, OrderItemMapper.class})
+class OrderReadQueryCountTest {
+
+    private static final int ORDERS = 25;
+    private static final int ITEMS_PER_ORDER = 4;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private StockReservationLedger stockLedger;
+
+    @MockBean
+    private OrderExpiryScheduler expiryScheduler;
+
+    @MockBean
+    private OrderOutbox orderOutbox;
+
+    @MockBean
+    private SalesAggregates salesAggregates;
+
+    private Statistics statistics;
+    private Long firstOrderId;
+
+    @BeforeEach
+    void setUp() {
+        List<ProductEntity> products = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ProductEntity product = new ProductEntity();
+            product.setName("Product " + i);
+            product.setPrice(new BigDecimal("10.00"));
+            product.setStockQuantity(100);
+            products.add(testEntityManager.persist(product));
+        }
+        for (int i = 0; i < ORDERS; i++) {
+            OrderEntity order = new OrderEntity();
+            order.setCreatedAt(LocalDateTime.now().minusMinutes(i));
+            order.setExpiresAt(LocalDateTime.now().plusMinutes(30));
+            order.setStatus(OrderStatus.PENDING);
+            for (int j = 0; j < ITEMS_PER_ORDER; j++) {
+                OrderItemEntity item = new OrderItemEntity();
+                item.setProduct(products.get((i + j) % products.size()));
+                item.setQuantity(1);
+                item.setPrice(item.getProduct().getPrice());
+                order.addItem(item);
+            }
+            OrderEntity saved = testEntityManager.persist(order);
+            if (firstOrderId == null) {
+                firstOrderId = saved.getId();
+            }
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getAllOrders_ShouldLoadOrdersItemsAndProductsInOneStatement() {
+        List<OrderDTO> orders = orderService.getAllOrders();
+
+        assertEquals(ORDERS, orders.size());
+        assertTrue(orders.stream().allMatch(order -> order.items().size() == ITEMS_PER_ORDER));
+        assertTrue(orders.stream().flatMap(order -> order.items().stream()).allMatch(item -> item.productName() != null));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getOrderById_ShouldLoadOrderItemsAndProductsInOneStatement() {
+        OrderDTO order = orderService.getOrderById(firstOrderId);
+
+        assertEquals(ITEMS_PER_ORDER, order.items().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getOrdersPage_ShouldUseBatchFetchingIndependentOfPageSize() {
+        OrderPageDTO page = orderService.getOrdersPage(new OrderFilterDTO(null, null, null), null, 20);
+
+        assertEquals(20, page.items().size());
+        assertTrue(page.items().stream().allMatch(order -> order.items().size() == ITEMS_PER_ORDER));
+        // orders, items of the whole page, products of the whole page
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void streamOrders_ShouldReadAllOrdersWithOneStatement() {
+        List<OrderDTO> orders = new ArrayList<>();
+        orderService.streamOrders(new OrderFilterDTO(null, null, null), orders::add);
+
+        assertEquals(ORDERS, orders.size());
+        assertTrue(orders.stream().allMatch(order -> order.items().size() == ITEMS_PER_ORDER));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
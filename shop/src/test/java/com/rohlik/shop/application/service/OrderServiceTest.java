@@ -1,25 +1,36 @@
 package com.rohlik.shop.application.service;
 
+import com.rohlik.shop.adapters.in.web.dto.OrderBatchResultDTO;
 import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.ProductSalesDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderFilterDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderPageDTO;
 import com.rohlik.shop.adapters.in.web.dto.OrderItemDTO;
 import com.rohlik.shop.adapters.out.persistence.JpaOrderRepository;
 import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.adapters.out.persistence.JpaStockStore;
 import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderEventType;
 import com.rohlik.shop.application.domain.OrderItemEntity;
 import com.rohlik.shop.application.domain.OrderStatus;
 import com.rohlik.shop.application.domain.ProductEntity;
 import com.rohlik.shop.adapters.in.web.mapper.OrderMapper;
 import com.rohlik.shop.adapters.in.web.mapper.OrderItemMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
+import org.springframework.data.domain.PageRequest;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -33,7 +44,12 @@ class OrderServiceTest {
     private JpaProductRepository productRepository = Mockito.mock(JpaProductRepository.class);
     private OrderItemMapper orderItemMapper = new OrderItemMapper();
     private OrderMapper orderMapper = new OrderMapper(orderItemMapper);
-    private OrderService orderService = new OrderService(orderRepository, productRepository, orderMapper);
+    private StockReservationLedger stockLedger = new StockReservationLedger(new JpaStockStore(productRepository), Mockito.mock(LiveUpdateBroadcaster.class),
+        new ProductLockManager(new SimpleMeterRegistry(), 16, Duration.ofSeconds(1)));
+    private OrderExpiryScheduler expiryScheduler = Mockito.mock(OrderExpiryScheduler.class);
+    private OrderOutbox orderOutbox = Mockito.mock(OrderOutbox.class);
+    private SalesAggregates salesAggregates = new SalesAggregates(orderRepository, new SimpleMeterRegistry());
+    private OrderService orderService = new OrderService(orderRepository, productRepository, orderMapper, stockLedger, expiryScheduler, orderOutbox, salesAggregates);
 
     private OrderDTO orderDTO;
     private OrderEntity orderEntity;
@@ -77,6 +93,7 @@ class OrderServiceTest {
     void createOrder_ShouldCreateAndReturnOrder() {
         when(orderRepository.save(any(OrderEntity.class))).thenReturn(orderEntity);
         when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+        when(productRepository.findAllById(any())).thenReturn(Arrays.asList(productEntity));
 
         OrderDTO result = orderService.createOrder(orderDTO);
 
@@ -88,9 +105,78 @@ class OrderServiceTest {
         verify(orderRepository).save(any(OrderEntity.class));
     }
 
+    @Test
+    void createOrder_ShouldReserveStockInLedger() {
+        when(orderRepository.save(any(OrderEntity.class))).thenReturn(orderEntity);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+        when(productRepository.findAllById(any())).thenReturn(Arrays.asList(productEntity));
+
+        orderService.createOrder(orderDTO);
+
+        assertEquals(98, stockLedger.available(1L));
+        verify(expiryScheduler).schedule(orderEntity.getId(), orderEntity.getExpiresAt());
+    }
+
+    @Test
+    void createOrder_WhenStockIsInsufficient_ShouldThrowException() {
+        productEntity.setStockQuantity(1);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+        when(productRepository.findAllById(any())).thenReturn(Arrays.asList(productEntity));
+
+        assertThrows(IllegalStateException.class, () -> orderService.createOrder(orderDTO));
+
+        assertEquals(1, stockLedger.available(1L));
+        verify(orderRepository, never()).save(any(OrderEntity.class));
+    }
+
+    @Test
+    void createOrders_ShouldCreateValidOrdersAndRejectOthers() {
+        when(productRepository.findAllById(any())).thenReturn(Arrays.asList(productEntity));
+        when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+        OrderDTO tooLarge = new OrderDTO(null, null, null, null,
+            Arrays.asList(new OrderItemDTO(null, 1L, null, 99, null)), null);
+        OrderDTO unknownProduct = new OrderDTO(null, null, null, null,
+            Arrays.asList(new OrderItemDTO(null, 42L, null, 1, null)), null);
+
+        List<OrderBatchResultDTO> results = orderService.createOrders(Arrays.asList(orderDTO, tooLarge, unknownProduct));
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).created());
+        assertFalse(results.get(1).created());
+        assertEquals("Insufficient stock for product with id: 1", results.get(1).error());
+        assertEquals("Product not found with id: 42", results.get(2).error());
+        assertEquals(98, stockLedger.available(1L));
+        verify(productRepository).findAllById(any());
+        verify(orderRepository).saveAll(argThat(orders -> ((List<?>) orders).size() == 1));
+    }
+
+    @Test
+    void createOrders_WhenStockLockTimesOut_ShouldRejectOnlyThatOrder() {
+        when(productRepository.findAllById(any())).thenReturn(Arrays.asList(productEntity));
+        when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+        StockReservationLedger busyLedger = spy(stockLedger);
+        doCallRealMethod()
+            .doThrow(new StockLockTimeoutException("Stock of products [1] is busy, try again later"))
+            .when(busyLedger).reserve(any());
+        OrderService service = new OrderService(orderRepository, productRepository, orderMapper, busyLedger,
+            expiryScheduler, orderOutbox, salesAggregates);
+
+        List<OrderBatchResultDTO> results = service.createOrders(Arrays.asList(orderDTO, orderDTO));
+
+        assertTrue(results.get(0).created());
+        assertFalse(results.get(1).created());
+        assertEquals("Stock of products [1] is busy, try again later", results.get(1).error());
+        verify(orderRepository).saveAll(argThat(orders -> ((List<?>) orders).size() == 1));
+    }
+
+    @Test
+    void createOrders_WhenBatchIsEmpty_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.createOrders(List.of()));
+    }
+
     @Test
     void getAllOrders_ShouldReturnListOfOrders() {
-        when(orderRepository.findAll()).thenReturn(Arrays.asList(orderEntity));
+        when(orderRepository.findAllWithItems()).thenReturn(Arrays.asList(orderEntity));
 
         var result = orderService.getAllOrders();
 
@@ -99,12 +185,40 @@ class OrderServiceTest {
         assertEquals(orderDTO.id(), result.get(0).id());
         assertEquals(orderDTO.status(), result.get(0).status());
         assertEquals(1, result.get(0).items().size());
-        verify(orderRepository).findAll();
+        verify(orderRepository).findAllWithItems();
+    }
+
+    @Test
+    void getOrdersPage_WhenMoreRowsExist_ShouldReturnCursorOfLastOrder() {
+        OrderEntity older = new OrderEntity();
+        older.setId(0L);
+        older.setCreatedAt(orderEntity.getCreatedAt().minusMinutes(1));
+        older.setStatus(OrderStatus.PENDING);
+        when(orderRepository.findPage(any(), any(), any(), any(), any(), any()))
+            .thenReturn(Arrays.asList(orderEntity, older));
+
+        OrderPageDTO page = orderService.getOrdersPage(new OrderFilterDTO(null, null, null), null, 1);
+
+        assertEquals(1, page.items().size());
+        assertNotNull(page.nextCursor());
+
+        orderService.getOrdersPage(new OrderFilterDTO(null, null, null), page.nextCursor(), 1);
+
+        verify(orderRepository).findPage(null, null, null, orderEntity.getCreatedAt(), orderEntity.getId(), PageRequest.of(0, 2));
+    }
+
+    @Test
+    void getOrdersPage_WhenCursorIsInvalid_ShouldThrowException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () ->
+            orderService.getOrdersPage(new OrderFilterDTO(null, null, null), "garbage", 10)
+        );
+
+        assertEquals("Invalid cursor: garbage", exception.getMessage());
     }
 
     @Test
     void getOrderById_ShouldReturnOrder() {
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(orderEntity));
+        when(orderRepository.findWithItemsById(1L)).thenReturn(Optional.of(orderEntity));
 
         OrderDTO result = orderService.getOrderById(1L);
 
@@ -112,18 +226,18 @@ class OrderServiceTest {
         assertEquals(orderDTO.id(), result.id());
         assertEquals(orderDTO.status(), result.status());
         assertEquals(1, result.items().size());
-        verify(orderRepository).findById(1L);
+        verify(orderRepository).findWithItemsById(1L);
     }
 
     @Test
     void getOrderById_WhenOrderDoesNotExist_ShouldThrowException() {
-        when(orderRepository.findById(1L)).thenReturn(Optional.empty());
+        when(orderRepository.findWithItemsById(1L)).thenReturn(Optional.empty());
 
         EntityNotFoundException exception = assertThrows(EntityNotFoundException.class, () -> 
             orderService.getOrderById(1L)
         );
 
-        verify(orderRepository).findById(1L);
+        verify(orderRepository).findWithItemsById(1L);
     }
 
     @Test
@@ -140,6 +254,32 @@ class OrderServiceTest {
         verify(orderRepository).save(any(OrderEntity.class));
     }
 
+    @Test
+    void updateOrderStatus_WhenCancelled_ShouldReturnStockAndRecordCancellation() {
+        when(orderRepository.save(any(OrderEntity.class))).thenReturn(orderEntity);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+        when(productRepository.findAllById(any())).thenReturn(Arrays.asList(productEntity));
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(orderEntity));
+        orderService.createOrder(orderDTO);
+        assertEquals(98, stockLedger.available(1L));
+
+        OrderDTO result = orderService.updateOrderStatus(1L, OrderStatus.CANCELLED);
+
+        assertEquals(OrderStatus.CANCELLED, result.status());
+        assertEquals(100, stockLedger.available(1L));
+        verify(orderOutbox).record(1L, OrderEventType.CANCELLED, OrderStatus.CANCELLED);
+        verify(expiryScheduler).unschedule(1L);
+    }
+
+    @Test
+    void updateOrderStatus_WhenReopeningOrder_ShouldThrowException() {
+        orderEntity.setStatus(OrderStatus.CANCELLED);
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(orderEntity));
+
+        assertThrows(IllegalStateException.class, () -> orderService.updateOrderStatus(1L, OrderStatus.PENDING));
+        verify(orderRepository, never()).save(any(OrderEntity.class));
+    }
+
     @Test
     void updateOrderStatus_WhenOrderDoesNotExist_ShouldThrowException() {
         when(orderRepository.findById(1L)).thenReturn(Optional.empty());
@@ -163,6 +303,73 @@ class OrderServiceTest {
         verify(orderRepository).findById(1L);
     }
 
+    @Test
+    void cancelOrder_ShouldRecordEventInOutbox() {
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(orderEntity));
+
+        orderService.cancelOrder(1L);
+
+        verify(orderOutbox).record(1L, OrderEventType.CANCELLED, OrderStatus.CANCELLED);
+    }
+
+    @Test
+    void completeOrder_ShouldMoveReservedUnitsToSales() {
+        when(orderRepository.save(any(OrderEntity.class))).thenReturn(orderEntity);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+        when(productRepository.findAllById(any())).thenReturn(Arrays.asList(productEntity));
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(orderEntity));
+
+        orderService.createOrder(orderDTO);
+        ProductSalesDTO reserved = salesAggregates.getProductSales(1L);
+        orderService.completeOrder(1L);
+        ProductSalesDTO sold = salesAggregates.getProductSales(1L);
+
+        assertEquals(2, reserved.reservedUnits());
+        assertEquals(1, reserved.openReservations());
+        assertEquals(0, reserved.unitsSold());
+        assertEquals(0, sold.reservedUnits());
+        assertEquals(0, sold.openReservations());
+        assertEquals(2, sold.unitsSold());
+        assertEquals(0, new BigDecimal("20.00").compareTo(sold.revenue()));
+    }
+
+    @Test
+    void exportOrders_ShouldGroupConsecutiveItemRowsIntoOrders() {
+        LocalDateTime now = LocalDateTime.now();
+        List<JpaOrderRepository.OrderItemRow> rows = List.of(
+            new ItemRow(7L, now, OrderStatus.PENDING, 70L, "Milk", 1),
+            new ItemRow(7L, now, OrderStatus.PENDING, 71L, "Bread", 2),
+            new ItemRow(9L, now, OrderStatus.COMPLETED, 90L, "Milk", 3));
+        when(orderRepository.streamItemRows(null, null, null, 5L)).thenReturn(rows.stream());
+
+        List<OrderDTO> exported = new ArrayList<>();
+        orderService.exportOrders(new OrderFilterDTO(null, null, null), 5L, exported::add);
+
+        assertEquals(List.of(7L, 9L), exported.stream().map(OrderDTO::id).toList());
+        assertEquals(List.of(70L, 71L), exported.get(0).items().stream().map(OrderItemDTO::id).toList());
+        assertEquals(OrderStatus.COMPLETED, exported.get(1).status());
+        assertEquals(3, exported.get(1).items().get(0).quantity());
+    }
+
+    @Test
+    void streamOrders_ShouldGroupItemRowsAndKeepOrdersWithoutItems() {
+        LocalDateTime now = LocalDateTime.now();
+        List<JpaOrderRepository.OrderItemRow> rows = List.of(
+            new ItemRow(9L, now, OrderStatus.PENDING, 90L, "Milk", 1),
+            new ItemRow(9L, now, OrderStatus.PENDING, 91L, "Bread", 2),
+            new ItemRow(8L, now, OrderStatus.PENDING, null, null, null),
+            new ItemRow(7L, now, OrderStatus.COMPLETED, 70L, "Milk", 3));
+        when(orderRepository.streamFilteredItemRows(OrderStatus.PENDING, null, null)).thenReturn(rows.stream());
+
+        List<OrderDTO> streamed = new ArrayList<>();
+        orderService.streamOrders(new OrderFilterDTO(OrderStatus.PENDING, null, null), streamed::add);
+
+        assertEquals(List.of(9L, 8L, 7L), streamed.stream().map(OrderDTO::id).toList());
+        assertEquals(List.of(90L, 91L), streamed.get(0).items().stream().map(OrderItemDTO::id).toList());
+        assertTrue(streamed.get(1).items().isEmpty());
+        verify(orderRepository, never()).findWithItemsById(anyLong());
+    }
+
     @Test
     void cancelOrder_WhenOrderDoesNotExist_ShouldThrowException() {
         when(orderRepository.findById(1L)).thenReturn(Optional.empty());
@@ -175,4 +382,28 @@ class OrderServiceTest {
         verify(orderRepository).findById(1L);
         verify(orderRepository, never()).deleteById(anyLong());
     }
-} 
\ No newline at end of file
+
+    private record ItemRow(Long getOrderId, LocalDateTime getCreatedAt, OrderStatus getStatus,
+                           Long getItemId, String getProductName, Integer getQuantity)
+            implements JpaOrderRepository.OrderItemRow {
+        @Override
+        public LocalDateTime getExpiresAt() {
+            return getCreatedAt.plusMinutes(30);
+        }
+
+        @Override
+        public Long getVersion() {
+            return 0L;
+        }
+
+        @Override
+        public Long getProductId() {
+            return 1L;
+        }
+
+        @Override
+        public BigDecimal getPrice() {
+            return new BigDecimal("10.00");
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.ProductImportErrorDTO;
+import com.rohlik.shop.adapters.in.web.dto.ProductImportResultDTO;
+import com.rohlik.shop.adapters.in.web.dto.ProductImportRowDTO;
+import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.application.domain.ProductEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+@Import({ProductImportService.class, LocalValidatorFactoryBean.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "shop.products.import.batch-size=2")
+class ProductImportServiceTest {
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private JpaProductRepository productRepository;
+
+    @MockBean
+    private StockReservationLedger stockLedger;
+
+    @MockBean
+    private ProductCatalogCache catalogCache;
+
+    @MockBean
+    private SalesAggregates salesAggregates;
+
+    @Test
+    void importProducts_ShouldUpsertByNameAndReportInvalidRows() {
+        ProductEntity milk = productRepository.save(product("Mléko", "29.90", 50));
+        ProductEntity bread = productRepository.save(product("Chléb", "39.90", 30));
+
+        ProductImportResultDTO result = productImportService.importProducts(List.of(
+            ProductImportRowDTO.parsed(2, "Mléko", new BigDecimal("29.90"), 80),
+            ProductImportRowDTO.parsed(3, "", new BigDecimal("10.00"), 1),
+            ProductImportRowDTO.parsed(4, "Chléb", new BigDecimal("44.90"), 20),
+            ProductImportRowDTO.malformed(5, "Price is not a number: abc"),
+            ProductImportRowDTO.parsed(6, "Máslo", new BigDecimal("69.90"), 25),
+            ProductImportRowDTO.parsed(7, "Olej", new BigDecimal("-1"), 5)
+        ).iterator());
+
+        assertEquals(6, result.rows());
+        assertEquals(1, result.created());
+        assertEquals(2, result.updated());
+        assertEquals(3, result.rejected());
+        assertEquals(List.of(
+            new ProductImportErrorDTO(3, "Name is required"),
+            new ProductImportErrorDTO(5, "Price is not a number: abc"),
+            new ProductImportErrorDTO(7, "Price must be positive")), result.errors());
+
+        // same price, the ledger takes the new level and writes it back itself
+        assertEquals(50, productRepository.findById(milk.getId()).orElseThrow().getStockQuantity());
+        verify(stockLedger).setLevel(milk.getId(), 80);
+        verify(stockLedger, never()).track(eq(milk.getId()), anyInt());
+
+        // new price, new version like a catalog update
+        assertFalse(productRepository.findById(bread.getId()).orElseThrow().isActive());
+        ProductEntity newBread = productRepository.findByNameIn(List.of("Chléb")).stream()
+            .filter(ProductEntity::isActive).findFirst().orElseThrow();
+        assertEquals(new BigDecimal("44.90"), newBread.getPrice());
+        verify(salesAggregates).recordRepointed(bread.getId(), newBread.getId());
+
+        assertTrue(productRepository.findByName("Máslo").isPresent());
+        verify(stockLedger).track(anyLong(), eq(25));
+    }
+
+    private static ProductEntity product(String name, String price, int stockQuantity) {
+        ProductEntity product = new ProductEntity();
+        product.setName(name);
+        product.setPrice(new BigDecimal(price));
+        product.setStockQuantity(stockQuantity);
+        return product;
+    }
+}
@@ -0,0 +1,107 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.ProductImportRowDTO;
+import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.adapters.out.persistence.JpaStockStore;
+import com.rohlik.shop.application.domain.ProductEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stock import against the real ledger while a reservation of the same product is still open.
+ * Runs without a test transaction, the ledger only tracks committed products.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ProductImportService.class, StockReservationLedger.class, JpaStockStore.class, ProductLockManager.class,
+    LocalValidatorFactoryBean.class, SimpleMeterRegistry.class})
+class ProductImportStockTest {
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private StockReservationLedger stockLedger;
+
+    @Autowired
+    private JpaProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private LiveUpdateBroadcaster liveUpdates;
+
+    @MockBean
+    private ProductCatalogCache catalogCache;
+
+    @MockBean
+    private SalesAggregates salesAggregates;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void importProducts_WhileReservationIsOpen_ShouldKeepReservationOnTopOfImportedLevel(boolean commit) throws Exception {
+        ProductEntity milk = new ProductEntity();
+        milk.setName("Mléko");
+        milk.setPrice(new BigDecimal("29.90"));
+        milk.setStockQuantity(50);
+        milk = productRepository.save(milk);
+        Long milkId = milk.getId();
+        stockLedger.track(milkId, 50);
+
+        CountDownLatch reserved = new CountDownLatch(1);
+        CountDownLatch imported = new CountDownLatch(1);
+        TransactionTemplate order = new TransactionTemplate(transactionManager);
+        order.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        CompletableFuture<Void> reservation = CompletableFuture.runAsync(() -> order.executeWithoutResult(status -> {
+            stockLedger.reserve(Map.of(milkId, 5));
+            reserved.countDown();
+            try {
+                assertTrue(imported.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (!commit) {
+                status.setRollbackOnly();
+            }
+        }));
+
+        assertTrue(reserved.await(10, TimeUnit.SECONDS));
+        assertEquals(45, stockLedger.available(milkId));
+        productImportService.importProducts(List.of(
+            ProductImportRowDTO.parsed(2, "Mléko", new BigDecimal("29.90"), 80)).iterator());
+        imported.countDown();
+        reservation.get(10, TimeUnit.SECONDS);
+
+        // the open reservation counts as made after the import: kept on commit, returned on rollback
+        assertEquals(commit ? 75 : 80, stockLedger.available(milkId));
+        // the stored level commits with the order, it never waits for a write-back
+        assertEquals(commit ? 75 : 80, productRepository.findById(milkId).orElseThrow().getStockQuantity());
+    }
+}
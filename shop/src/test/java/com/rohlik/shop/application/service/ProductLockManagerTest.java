@@ -0,0 +1,77 @@
+package com.rohlik.shop.application.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductLockManagerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProductLockManager lockManager = new ProductLockManager(meterRegistry, 64, Duration.ofSeconds(5));
+
+    @Test
+    void lock_WithOverlappingProductsInOppositeOrder_ShouldNotDeadlock() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            int[] counter = new int[1];
+            Future<?> forward = executor.submit(() -> lockRepeatedly(List.of(1L, 2L, 3L), counter));
+            Future<?> backward = executor.submit(() -> lockRepeatedly(List.of(3L, 2L, 1L), counter));
+
+            forward.get(10, TimeUnit.SECONDS);
+            backward.get(10, TimeUnit.SECONDS);
+
+            // the shared counter is only touched under the locks
+            assertEquals(20_000, counter[0]);
+            assertEquals(0, meterRegistry.get("shop.stock.lock.timeouts").counter().count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void lock_WhenProductStaysLocked_ShouldTimeOutAndReleaseTakenStripes() throws Exception {
+        ProductLockManager shortTimeout = new ProductLockManager(meterRegistry, 64, Duration.ofMillis(50));
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (ProductLockManager.Locked locked = shortTimeout.lock(List.of(2L))) {
+                held.countDown();
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        holder.start();
+        assertTrue(held.await(5, TimeUnit.SECONDS));
+
+        assertThrows(StockLockTimeoutException.class, () -> shortTimeout.lock(List.of(1L, 2L)));
+        assertEquals(1, meterRegistry.get("shop.stock.lock.timeouts").counter().count());
+
+        // product 1 was released again, another thread can take it right away
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> shortTimeout.lock(List.of(1L)).close()).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    private void lockRepeatedly(List<Long> productIds, int[] counter) {
+        for (int i = 0; i < 10_000; i++) {
+            try (ProductLockManager.Locked locked = lockManager.lock(productIds)) {
+                counter[0]++;
+            }
+        }
+    }
+}
@@ -1,22 +1,28 @@
 package com.rohlik.shop.application.service;
 
 import com.rohlik.shop.adapters.in.web.dto.ProductDTO;
+import com.rohlik.shop.adapters.in.web.dto.ProductPageDTO;
+import com.rohlik.shop.adapters.out.persistence.JpaOrderRepository;
 import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
-import com.rohlik.shop.application.domain.OrderEntity;
-import com.rohlik.shop.application.domain.OrderItemEntity;
+import com.rohlik.shop.adapters.out.persistence.JpaStockStore;
 import com.rohlik.shop.application.domain.OrderStatus;
 import com.rohlik.shop.application.domain.ProductEntity;
 import com.rohlik.shop.adapters.in.web.mapper.ProductMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,9 +34,20 @@ class ProductServiceTest {
 
     private JpaProductRepository productRepository = Mockito.mock(JpaProductRepository.class);
 
+    private JpaOrderRepository orderRepository = Mockito.mock(JpaOrderRepository.class);
+
     private ProductMapper productMapper = new ProductMapper();
 
-    private ProductService productService = new ProductService(productRepository, productMapper);
+    private StockReservationLedger stockLedger = new StockReservationLedger(new JpaStockStore(productRepository), Mockito.mock(LiveUpdateBroadcaster.class),
+        new ProductLockManager(new SimpleMeterRegistry(), 16, Duration.ofSeconds(1)));
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ProductCatalogCache catalogCache = new ProductCatalogCache(meterRegistry, 100, Duration.ofMinutes(10));
+
+    private SalesAggregates salesAggregates = new SalesAggregates(orderRepository, meterRegistry);
+
+    private ProductService productService = new ProductService(productRepository, orderRepository, productMapper, stockLedger, catalogCache, salesAggregates);
 
     private ProductDTO productDTO;
     private ProductEntity productEntity;
@@ -81,7 +98,7 @@ class ProductServiceTest {
 
     @Test
     void getAllProducts_ShouldReturnOnlyActiveProducts() {
-        when(productRepository.findAll()).thenReturn(Arrays.asList(productEntity, inactiveProductEntity));
+        when(productRepository.findByActiveTrue()).thenReturn(Arrays.asList(productEntity));
 
         var result = productService.getAllProducts();
 
@@ -91,7 +108,31 @@ class ProductServiceTest {
         assertEquals(productDTO.name(), result.get(0).name());
         assertEquals(productDTO.price(), result.get(0).price());
         assertEquals(productDTO.stockQuantity(), result.get(0).stockQuantity());
-        verify(productRepository).findAll();
+        verify(productRepository).findByActiveTrue();
+    }
+
+    @Test
+    void getProductsPage_ShouldReturnPageOfActiveProducts() {
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("price"));
+        when(productRepository.findByActiveTrue(pageable))
+            .thenReturn(new PageImpl<>(Arrays.asList(productEntity), pageable, 11));
+
+        ProductPageDTO result = productService.getProductsPage(pageable);
+
+        assertEquals(1, result.items().size());
+        assertEquals(productDTO.name(), result.items().get(0).name());
+        assertEquals(11, result.totalElements());
+        assertEquals(2, result.totalPages());
+    }
+
+    @Test
+    void getProductsPage_WhenSortPropertyIsUnknown_ShouldThrowException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () ->
+            productService.getProductsPage(PageRequest.of(0, 10, Sort.by("orderItems")))
+        );
+
+        assertEquals("Cannot sort products by: orderItems", exception.getMessage());
+        verify(productRepository, never()).findByActiveTrue(any(Pageable.class));
     }
 
     @Test
@@ -108,6 +149,52 @@ class ProductServiceTest {
         verify(productRepository).findById(1L);
     }
 
+    @Test
+    void getProductById_ShouldServeRepeatedReadsFromCache() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+
+        productService.getProductById(1L);
+        productService.getProductById(1L);
+
+        verify(productRepository, times(1)).findById(1L);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "catalog.products").tag("result", "hit")
+            .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "catalog.products").tag("result", "miss")
+            .functionCounter().count());
+    }
+
+    @Test
+    void getProductById_ShouldOverlayLiveStockFromLedger() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+        productService.getProductById(1L);
+
+        stockLedger.track(1L, 42);
+
+        assertEquals(42, productService.getProductById(1L).stockQuantity());
+    }
+
+    @Test
+    void deactivateProduct_ShouldEvictCachedProduct() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+        productService.getProductById(1L);
+
+        productService.deactivateProduct(1L);
+
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductById(1L));
+    }
+
+    @Test
+    void createProduct_ShouldEvictCachedProductList() {
+        when(productRepository.findByActiveTrue()).thenReturn(Arrays.asList(productEntity));
+        when(productRepository.save(any(ProductEntity.class))).thenReturn(inactiveProductEntity);
+        productService.getAllProducts();
+
+        productService.createProduct(productDTO);
+        productService.getAllProducts();
+
+        verify(productRepository, times(2)).findByActiveTrue();
+    }
+
     @Test
     void getProductById_WhenProductIsInactive_ShouldThrowException() {
         when(productRepository.findById(2L)).thenReturn(Optional.of(inactiveProductEntity));
@@ -145,7 +232,7 @@ class ProductServiceTest {
         assertEquals(productDTO.price(), result.price());
         assertEquals(productDTO.stockQuantity(), result.stockQuantity());
         verify(productRepository).findById(1L);
-        verify(productRepository, times(4)).save(any(ProductEntity.class));
+        verify(productRepository, times(2)).save(any(ProductEntity.class));
     }
 
     @Test
@@ -187,16 +274,8 @@ class ProductServiceTest {
     
     @Test
     void deactivateProduct_WhenProductHasActiveOrders_ShouldThrowException() {
-        // Příprava dat pro test
-        OrderEntity pendingOrder = new OrderEntity();
-        pendingOrder.setStatus(OrderStatus.PENDING);
-        
-        OrderItemEntity orderItem = new OrderItemEntity();
-        orderItem.setOrder(pendingOrder);
-        
-        productEntity.setOrderItems(Collections.singletonList(orderItem));
-        
         when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
+        when(orderRepository.existsItemOfProduct(1L, OrderStatus.PENDING)).thenReturn(true);
         
         IllegalStateException exception = assertThrows(IllegalStateException.class, () -> 
             productService.deactivateProduct(1L)
@@ -217,28 +296,11 @@ class ProductServiceTest {
         savedNewProduct.setStockQuantity(150);
         savedNewProduct.setVersion(0L);
         savedNewProduct.setActive(true);
-        savedNewProduct.setOrderItems(new ArrayList<>());
-        
-        // Vytvoření aktivní objednávky
-        OrderEntity pendingOrder = new OrderEntity();
-        pendingOrder.setStatus(OrderStatus.PENDING);
-        
-        // Vytvoření položky objednávky odkazující na starý produkt
-        OrderItemEntity activeOrderItem = new OrderItemEntity();
-        activeOrderItem.setOrder(pendingOrder);
-        activeOrderItem.setProduct(productEntity);
-        
-        // Přidání položky do kolekce starého produktu - použijeme ArrayList místo Collections.singletonList
-        ArrayList<OrderItemEntity> orderItems = new ArrayList<>();
-        orderItems.add(activeOrderItem);
-        productEntity.setOrderItems(orderItems);
         
         when(productRepository.findById(1L)).thenReturn(Optional.of(productEntity));
         when(productRepository.save(any(ProductEntity.class)))
             .thenReturn(productEntity) // První volání - deaktivace starého produktu
-            .thenReturn(savedNewProduct) // Druhé volání - uložení nového produktu
-            .thenReturn(productEntity) // Třetí volání - aktualizace starého produktu
-            .thenReturn(savedNewProduct); // Čtvrté volání - aktualizace nového produktu
+            .thenReturn(savedNewProduct); // Druhé volání - uložení nového produktu
             
         ProductDTO updatedProductDTO = new ProductDTO(
             1L,
@@ -261,14 +323,11 @@ class ProductServiceTest {
         // Ověření, že starý produkt byl deaktivován
         assertFalse(productEntity.isActive());
         
-        // Ověření, že reference na aktivní objednávku byly přesunuty na nový produkt
-        assertTrue(productEntity.getOrderItems().isEmpty());
-        assertEquals(1, savedNewProduct.getOrderItems().size());
-        assertSame(activeOrderItem, savedNewProduct.getOrderItems().get(0));
-        assertSame(savedNewProduct, activeOrderItem.getProduct());
+        // Ověření, že položky aktivních objednávek byly přesměrovány jedním hromadným UPDATE
+        verify(orderRepository).repointItems(productEntity, savedNewProduct, new BigDecimal("15.00"), OrderStatus.PENDING);
         
         // Ověření, že repository bylo voláno správným způsobem
         verify(productRepository).findById(1L);
-        verify(productRepository, times(4)).save(any(ProductEntity.class));
+        verify(productRepository, times(2)).save(any(ProductEntity.class));
     }
-} 
\ No newline at end of file
+}
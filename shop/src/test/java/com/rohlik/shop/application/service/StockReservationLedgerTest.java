@@ -0,0 +1,305 @@
+package com.rohlik.shop.application.service;
+
+import com.rohlik.shop.adapters.in.web.dto.LiveUpdateDTO;
+import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.adapters.out.persistence.JpaStockStore;
+import com.rohlik.shop.application.domain.ProductEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StockReservationLedgerTest {
+
+    private JpaProductRepository productRepository = Mockito.mock(JpaProductRepository.class);
+    private LiveUpdateBroadcaster liveUpdates = Mockito.mock(LiveUpdateBroadcaster.class);
+    private StockReservationLedger stockLedger = new StockReservationLedger(new JpaStockStore(productRepository), liveUpdates,
+        new ProductLockManager(new SimpleMeterRegistry(), 16, Duration.ofSeconds(1)));
+
+    @BeforeEach
+    void setUp() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product(1L, 10)));
+        when(productRepository.findById(2L)).thenReturn(Optional.of(product(2L, 1)));
+    }
+
+    @Test
+    void reserve_ShouldDecreaseAvailableStock() {
+        stockLedger.reserve(Map.of(1L, 3));
+
+        assertEquals(7, stockLedger.available(1L));
+    }
+
+    @Test
+    void reserve_WhenAnyItemIsShort_ShouldReserveNothing() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+            stockLedger.reserve(Map.of(1L, 3, 2L, 5))
+        );
+
+        assertEquals("Insufficient stock for product with id: 2", exception.getMessage());
+        assertEquals(10, stockLedger.available(1L));
+        assertEquals(1, stockLedger.available(2L));
+    }
+
+    @Test
+    void reserve_InsideTransaction_ShouldPublishLevelOnlyAfterCommit() {
+        when(liveUpdates.hasSubscribers()).thenReturn(true);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockLedger.reserve(Map.of(1L, 3));
+            verify(liveUpdates, never()).publish(any());
+
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(liveUpdates).publish(LiveUpdateDTO.productStock(1L, 7));
+    }
+
+    @Test
+    void release_ShouldReturnStock() {
+        stockLedger.reserve(Map.of(1L, 4));
+        stockLedger.release(Map.of(1L, 4));
+
+        assertEquals(10, stockLedger.available(1L));
+    }
+
+    @Test
+    void reserve_OutsideTransaction_ShouldAdjustStoredLevelOfChangedProductsOnly() {
+        stockLedger.reserve(Map.of(1L, 4));
+        stockLedger.available(2L);
+
+        verify(productRepository).adjustStockQuantities(Map.of(1L, -4));
+        verify(productRepository, times(1)).adjustStockQuantities(anyMap());
+    }
+
+    @Test
+    void reserve_InsideTransaction_ShouldAdjustStoredLevelOnceRightBeforeCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockLedger.reserve(Map.of(1L, 2));
+            stockLedger.reserve(Map.of(1L, 3));
+            verify(productRepository, never()).adjustStockQuantities(anyMap());
+
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(productRepository).adjustStockQuantities(Map.of(1L, -5));
+        verifyNoMoreInteractions(ignoreStubs(productRepository));
+        assertEquals(5, stockLedger.available(1L));
+    }
+
+    @Test
+    void reserve_WhenTransactionRollsBack_ShouldNotAdjustStoredLevel() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockLedger.reserve(Map.of(1L, 3));
+
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(productRepository, never()).adjustStockQuantities(anyMap());
+        assertEquals(10, stockLedger.available(1L));
+    }
+
+    @Test
+    void reserve_WhenStoreFailsBeforeCommit_ShouldFailCommitAndReturnStock() {
+        doThrow(new IllegalStateException("db down")).when(productRepository).adjustStockQuantities(Map.of(1L, -4));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockLedger.reserve(Map.of(1L, 4));
+
+            assertThrows(IllegalStateException.class, () -> complete(TransactionSynchronization.STATUS_COMMITTED));
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(10, stockLedger.available(1L));
+    }
+
+    @Test
+    void release_InsideTransaction_ShouldAdjustStoredLevelAndReturnStockOnCommit() {
+        stockLedger.reserve(Map.of(1L, 4));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockLedger.release(Map.of(1L, 4));
+            assertEquals(6, stockLedger.available(1L));
+
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(productRepository).adjustStockQuantities(Map.of(1L, 4));
+        assertEquals(10, stockLedger.available(1L));
+    }
+
+    @Test
+    void setLevel_WhileReservationIsOpen_ShouldKeepItReservedUntilRollback() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockLedger.reserve(Map.of(1L, 3));
+            // an import runs on its own thread, outside of the order's transaction
+            CompletableFuture.runAsync(() -> stockLedger.setLevel(1L, 20)).get(5, TimeUnit.SECONDS);
+            assertEquals(17, stockLedger.available(1L));
+
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(20, stockLedger.available(1L));
+        verify(productRepository).adjustStockQuantities(Map.of(1L, 10));
+        verifyNoMoreInteractions(ignoreStubs(productRepository));
+    }
+
+    @Test
+    void setLevel_InsideTransaction_ShouldRefuse() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThrows(IllegalStateException.class, () -> stockLedger.setLevel(1L, 20));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(10, stockLedger.available(1L));
+    }
+
+    @Test
+    void reserve_WhileOtherReservationIsUndoneHalfway_ShouldNeverRejectSpuriously() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // always short on product 2, so it takes product 1 first and then gives it back
+            Future<?> failing = executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    assertThrows(IllegalStateException.class, () -> stockLedger.reserve(Map.of(1L, 1, 2L, 2)));
+                }
+            });
+            Future<?> whole = executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    stockLedger.reserve(Map.of(1L, 10));
+                    stockLedger.release(Map.of(1L, 10));
+                }
+            });
+
+            failing.get(30, TimeUnit.SECONDS);
+            whole.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(10, stockLedger.available(1L));
+    }
+
+    @Test
+    void track_InsideTransaction_ShouldCountAndPublishOnlyAfterCommit() {
+        when(liveUpdates.hasSubscribers()).thenReturn(true);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockLedger.track(5L, 30);
+            verify(liveUpdates, never()).publish(any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(30, stockLedger.available(5L));
+        verify(liveUpdates).publish(LiveUpdateDTO.productStock(5L, 30));
+    }
+
+    @Test
+    void track_WhenTransactionRollsBack_ShouldLeaveNoCounterOrLevelBehind() {
+        when(liveUpdates.hasSubscribers()).thenReturn(true);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockLedger.track(5L, 30);
+
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(0, stockLedger.available(5L));
+        verify(liveUpdates, never()).publish(any());
+    }
+
+    @Test
+    void recover_ShouldRebuildCountersFromDatabase() {
+        JpaProductRepository.StockLevel level = mock(JpaProductRepository.StockLevel.class);
+        when(level.getId()).thenReturn(3L);
+        when(level.getStockQuantity()).thenReturn(42);
+        when(productRepository.findActiveStockLevels()).thenReturn(List.of(level));
+
+        stockLedger.recover();
+
+        assertEquals(42, stockLedger.available(3L));
+        verify(productRepository, never()).findById(3L);
+    }
+
+    @Test
+    void reserve_UnderContention_ShouldNeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    stockLedger.reserve(Map.of(1L, 1));
+                    accepted.incrementAndGet();
+                } catch (IllegalStateException ignored) {
+                    // rejected
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(10, accepted.get());
+        assertEquals(0, stockLedger.available(1L));
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private ProductEntity product(Long id, int stockQuantity) {
+        ProductEntity product = new ProductEntity();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setPrice(new BigDecimal("10.00"));
+        product.setStockQuantity(stockQuantity);
+        return product;
+    }
+}
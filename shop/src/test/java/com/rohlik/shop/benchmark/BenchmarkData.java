@@ -0,0 +1,47 @@
+package com.rohlik.shop.benchmark;
+
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.OrderItemEntity;
+import com.rohlik.shop.application.domain.OrderStatus;
+import com.rohlik.shop.application.domain.ProductEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Detached entities shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static OrderEntity order(int items) {
+        OrderEntity order = new OrderEntity();
+        order.setId(1L);
+        order.setCreatedAt(LocalDateTime.now());
+        order.setExpiresAt(LocalDateTime.now().plusMinutes(30));
+        order.setStatus(OrderStatus.PENDING);
+        order.setVersion(0L);
+        for (int i = 0; i < items; i++) {
+            ProductEntity product = product(i + 1L);
+            OrderItemEntity item = new OrderItemEntity();
+            item.setId(i + 1L);
+            item.setProduct(product);
+            item.setQuantity(2);
+            item.setPrice(product.getPrice());
+            order.addItem(item);
+        }
+        return order;
+    }
+
+    static ProductEntity product(Long id) {
+        ProductEntity product = new ProductEntity();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setPrice(new BigDecimal("29.90"));
+        product.setStockQuantity(100);
+        product.setVersion(0L);
+        return product;
+    }
+}
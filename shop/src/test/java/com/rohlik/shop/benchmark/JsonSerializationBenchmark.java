@@ -0,0 +1,46 @@
+package com.rohlik.shop.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.mapper.OrderItemMapper;
+import com.rohlik.shop.adapters.in.web.mapper.OrderMapper;
+import com.rohlik.shop.config.JacksonConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization with the application's {@link JacksonConfig} mapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"1", "10", "40"})
+    private int items;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private OrderDTO order;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        order = new OrderMapper(new OrderItemMapper()).toDTO(BenchmarkData.order(items));
+        json = objectMapper.writeValueAsBytes(order);
+    }
+
+    @Benchmark
+    public byte[] serializeOrder() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(order);
+    }
+
+    @Benchmark
+    public OrderDTO deserializeOrder() throws Exception {
+        return objectMapper.readValue(json, OrderDTO.class);
+    }
+}
@@ -0,0 +1,45 @@
+package com.rohlik.shop.benchmark;
+
+import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.ProductDTO;
+import com.rohlik.shop.adapters.in.web.mapper.OrderItemMapper;
+import com.rohlik.shop.adapters.in.web.mapper.OrderMapper;
+import com.rohlik.shop.adapters.in.web.mapper.ProductMapper;
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.application.domain.ProductEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"1", "10", "40"})
+    private int items;
+
+    private final OrderMapper orderMapper = new OrderMapper(new OrderItemMapper());
+    private final ProductMapper productMapper = new ProductMapper();
+    private OrderEntity order;
+    private ProductEntity product;
+
+    @Setup
+    public void setUp() {
+        order = BenchmarkData.order(items);
+        product = order.getItems().get(0).getProduct();
+    }
+
+    @Benchmark
+    public OrderDTO orderToDTO() {
+        return orderMapper.toDTO(order);
+    }
+
+    @Benchmark
+    public ProductDTO productToDTO() {
+        return productMapper.toDTO(product);
+    }
+}
@@ -0,0 +1,72 @@
+package com.rohlik.shop.benchmark;
+
+import com.rohlik.shop.ShopApplication;
+import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderItemDTO;
+import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.application.service.OrderService;
+import com.rohlik.shop.application.service.StockReservationLedger;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OrderService#createOrder} end to end against the embedded H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderCreationBenchmark {
+
+    @Param({"1", "10", "40"})
+    private int items;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private OrderDTO order;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(ShopApplication.class)
+            .properties(
+                "server.port=0",
+                "spring.datasource.url=jdbc:h2:mem:benchmark",
+                "spring.jpa.show-sql=false",
+                "logging.level.root=WARN")
+            .run();
+        orderService = context.getBean(OrderService.class);
+        JpaProductRepository productRepository = context.getBean(JpaProductRepository.class);
+        StockReservationLedger stockLedger = context.getBean(StockReservationLedger.class);
+
+        List<OrderItemDTO> basket = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            ProductEntity product = new ProductEntity();
+            product.setName("Benchmark product " + i);
+            product.setPrice(new BigDecimal("10.00"));
+            product.setStockQuantity(Integer.MAX_VALUE);
+            product = productRepository.save(product);
+            stockLedger.track(product.getId(), product.getStockQuantity());
+            basket.add(new OrderItemDTO(null, product.getId(), null, 1, null));
+        }
+        order = new OrderDTO(null, null, null, null, basket, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public OrderDTO createOrder() {
+        return orderService.createOrder(order);
+    }
+}
@@ -0,0 +1,110 @@
+package com.rohlik.shop.benchmark;
+
+import com.rohlik.shop.ShopApplication;
+import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.dto.OrderItemDTO;
+import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.application.service.OrderService;
+import com.rohlik.shop.application.service.ProductRepository;
+import com.rohlik.shop.application.service.StockReservationLedger;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders kept only in a persistent H2 file database ({@code jpa}) and in the in-memory default database
+ * journaled to {@link com.rohlik.shop.adapters.out.log.MappedLogOrderStore} ({@code log}), the two ways
+ * orders survive a restart. {@code createOrder} is the cost per order, {@code restart} stops the
+ * application holding {@code orders} orders and starts it again, the log variant replaying them into
+ * the empty database.
+ * Run with: mvn -Pjmh test -Djmh.include=OrderStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+public class OrderStoreBenchmark {
+
+    @Param({"jpa", "log"})
+    private String store;
+
+    @Param({"10000"})
+    private int orders;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private OrderDTO order;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("order-store");
+        start();
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        StockReservationLedger stockLedger = context.getBean(StockReservationLedger.class);
+
+        List<OrderItemDTO> basket = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ProductEntity product = new ProductEntity();
+            product.setName("Benchmark product " + i);
+            product.setPrice(new BigDecimal("10.00"));
+            product.setStockQuantity(Integer.MAX_VALUE);
+            product = productRepository.save(product);
+            stockLedger.track(product.getId(), product.getStockQuantity());
+            basket.add(new OrderItemDTO(null, product.getId(), null, 1, null));
+        }
+        order = new OrderDTO(null, null, null, null, basket, null);
+        for (int created = 0; created < orders; created += 500) {
+            orderService.createOrders(Collections.nCopies(Math.min(500, orders - created), order));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory.toFile());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public OrderDTO createOrder() {
+        return orderService.createOrder(order);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public OrderService restart() {
+        context.close();
+        start();
+        return orderService;
+    }
+
+    private void start() {
+        String datasourceUrl = store.equals("log")
+            ? "jdbc:h2:mem:orderstore"
+            : "jdbc:h2:file:" + directory.resolve("shopdb").toAbsolutePath();
+        // arguments, not builder properties, those are defaults that application.yml overrides
+        context = new SpringApplicationBuilder(ShopApplication.class).run(
+            "--server.port=0",
+            "--spring.datasource.url=" + datasourceUrl,
+            "--shop.persistence.order-store=" + store,
+            "--shop.persistence.log.directory=" + directory,
+            "--spring.jpa.show-sql=false",
+            "--logging.level.root=WARN");
+        orderService = context.getBean(OrderService.class);
+    }
+}
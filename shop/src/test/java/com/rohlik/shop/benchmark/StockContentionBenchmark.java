@@ -0,0 +1,165 @@
+package com.rohlik.shop.benchmark;
+
+import com.rohlik.shop.application.service.LiveUpdateBroadcaster;
+import com.rohlik.shop.application.service.ProductLockManager;
+import com.rohlik.shop.application.service.StockReservationLedger;
+import com.rohlik.shop.application.service.StockStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Orders competing for the stock of a few hot products, through {@link StockReservationLedger#reserve},
+ * which checks and takes the stock under the products' lock stripes, and through optimistic version checks on the product rows, which is how orders reserved stock before
+ * the ledger. Both spend the same simulated transaction time per order. The optimistic variant spends it
+ * between reading the rows and committing, and loses the order when a row changed in the meantime, like an
+ * {@code OptimisticLockingFailureException} would. An order holds its stock for the hold time and returns it
+ * afterwards, like a cancellation, so stock stays scarce.
+ * Compare the {@code commits} rows, {@code conflicts} is the work thrown away and {@code rejected} are
+ * orders refused for lack of stock.
+ * Run with: mvn -Pjmh test -Djmh.include=StockContentionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class StockContentionBenchmark {
+
+    @Param({"1", "8", "64"})
+    private int hotProducts;
+
+    @Param({"3"})
+    private int itemsPerOrder;
+
+    // units of every hot product, the 8 threads want more than that at once
+    @Param({"4"})
+    private int stock;
+
+    // time between reading the stock and committing, stands in for the database round trips of the transaction
+    @Param({"100"})
+    private int transactionMicros;
+
+    // how long an order keeps its stock before it is cancelled
+    @Param({"100"})
+    private int holdMicros;
+
+    private StockReservationLedger ledger;
+    private Row[] rows;
+
+    @Setup
+    public void setUp() {
+        Map<Long, Integer> levels = new HashMap<>();
+        rows = new Row[hotProducts];
+        for (int i = 0; i < hotProducts; i++) {
+            levels.put((long) i, stock);
+            rows[i] = new Row(0, stock);
+        }
+        ledger = new StockReservationLedger(new InMemoryStockStore(levels),
+            new LiveUpdateBroadcaster(new SimpleMeterRegistry(), 16, 1),
+            new ProductLockManager(new SimpleMeterRegistry(), 256, Duration.ofSeconds(2)));
+        ledger.recover();
+    }
+
+    @Benchmark
+    public void ledger(Outcome outcome) {
+        Map<Long, Integer> order = pickProducts();
+        try {
+            ledger.reserve(order);
+        } catch (IllegalStateException ex) {
+            outcome.rejected++;
+            return;
+        }
+        LockSupport.parkNanos(transactionMicros * 1_000L);
+        outcome.commits++;
+        LockSupport.parkNanos(holdMicros * 1_000L);
+        ledger.release(order);
+    }
+
+    @Benchmark
+    public void optimisticVersionCheck(Outcome outcome) {
+        Map<Long, Integer> order = pickProducts();
+        Map<Long, Row> read = new HashMap<>();
+        synchronized (rows) {
+            order.keySet().forEach(productId -> read.put(productId, rows[productId.intValue()]));
+        }
+        if (read.values().stream().anyMatch(row -> row.stock() < 1)) {
+            outcome.rejected++;
+            return;
+        }
+        LockSupport.parkNanos(transactionMicros * 1_000L);
+
+        // the database locks the rows on flush and compares versions, one changed row rolls back everything
+        synchronized (rows) {
+            for (Map.Entry<Long, Row> entry : read.entrySet()) {
+                if (rows[entry.getKey().intValue()].version() != entry.getValue().version()) {
+                    outcome.conflicts++;
+                    return;
+                }
+            }
+            read.forEach((productId, row) -> rows[productId.intValue()] = row.add(-1));
+        }
+        outcome.commits++;
+        LockSupport.parkNanos(holdMicros * 1_000L);
+        // the cancellation writes the rows again, and may itself conflict with orders in flight
+        synchronized (rows) {
+            order.keySet().forEach(productId -> rows[productId.intValue()] = rows[productId.intValue()].add(1));
+        }
+    }
+
+    private Map<Long, Integer> pickProducts() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int count = Math.min(itemsPerOrder, hotProducts);
+        Map<Long, Integer> order = new HashMap<>();
+        while (order.size() < count) {
+            order.put((long) random.nextInt(hotProducts), 1);
+        }
+        return order;
+    }
+
+    private record Row(long version, int stock) {
+        Row add(int quantity) {
+            return new Row(version + 1, stock + quantity);
+        }
+    }
+
+    private record InMemoryStockStore(Map<Long, Integer> levels) implements StockStore {
+        @Override
+        public Map<Long, Integer> loadLevels() {
+            return levels;
+        }
+
+        @Override
+        public Optional<Integer> findLevel(Long productId) {
+            return Optional.ofNullable(levels.get(productId));
+        }
+
+        @Override
+        public void adjustLevels(Map<Long, Integer> changes) {
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcome {
+        public long commits;
+        public long conflicts;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commits = 0;
+            conflicts = 0;
+            rejected = 0;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.rohlik.shop.benchmark;
+
+import com.rohlik.shop.ShopApplication;
+import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.application.service.StockStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One batch of stock adjustments of {@code products} products, as an order of that many items commits
+ * it, and a full level load, through the JPA store on a file-backed H2 database and through the
+ * append-only log store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockStoreBenchmark {
+
+    @Param({"jpa", "log"})
+    private String store;
+
+    @Param({"10", "200"})
+    private int products;
+
+    private ConfigurableApplicationContext context;
+    private Path directory;
+    private StockStore stockStore;
+    private Map<Long, Integer> changes;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("stock-store-benchmark");
+        context = new SpringApplicationBuilder(ShopApplication.class)
+            .properties(
+                "server.port=0",
+                "spring.jpa.show-sql=false",
+                "logging.level.root=WARN")
+            // defaults lose against application.yml, which sets these
+            // the log store needs a database that survives restarts, both stores get the same one
+            .run("--spring.datasource.url=jdbc:h2:file:" + directory.resolve("shopdb"),
+                "--shop.persistence.stock-store=" + store,
+                "--shop.persistence.log.directory=" + directory,
+                "--shop.persistence.log.stock-capacity=64MB");
+        stockStore = context.getBean(StockStore.class);
+        JpaProductRepository productRepository = context.getBean(JpaProductRepository.class);
+
+        changes = new TreeMap<>();
+        for (int i = 0; i < products; i++) {
+            ProductEntity product = new ProductEntity();
+            product.setName("Benchmark product " + i);
+            product.setPrice(new BigDecimal("10.00"));
+            product.setStockQuantity(Integer.MAX_VALUE);
+            changes.put(productRepository.save(product).getId(), -1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public void adjustLevels() {
+        stockStore.adjustLevels(changes);
+    }
+
+    @Benchmark
+    public Map<Long, Integer> loadLevels() {
+        return stockStore.loadLevels();
+    }
+}
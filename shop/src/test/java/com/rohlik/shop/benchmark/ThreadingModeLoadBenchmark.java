@@ -0,0 +1,134 @@
+package com.rohlik.shop.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rohlik.shop.ShopApplication;
+import com.rohlik.shop.application.domain.ProductEntity;
+import com.rohlik.shop.application.service.ProductRepository;
+import com.rohlik.shop.application.service.StockReservationLedger;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP load against the running application with the default settings and with the shipped
+ * {@code virtual-threads} profile, including its connection pool limits. A response other than
+ * 200 fails the run, so errors never count as throughput. Stock, orders and outbox events go to the
+ * memory-mapped logs, so {@code createOrder} runs their appends on the request threads, virtual
+ * ones included. Add {@code -jvmArgsAppend -Djdk.tracePinnedThreads=short} to the JMH arguments to
+ * see virtual threads that block while pinned to their carrier.
+ * Throughput mode gives requests per second, sample mode the latency percentiles (p0.99).
+ * Virtual threads need Java 21, run with: mvn -Pjava21,jmh test -Djmh.include=ThreadingModeLoadBenchmark
+ * On older JVMs Spring ignores the setting and only the profile's pool settings differ.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(256)
+@Fork(1)
+public class ThreadingModeLoadBenchmark {
+
+    // "default" runs without a profile
+    @Param({"default", "virtual-threads"})
+    private String profile;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest ordersPage;
+    private HttpRequest productsPage;
+    private HttpRequest createOrder;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        SpringApplicationBuilder application = new SpringApplicationBuilder(ShopApplication.class);
+        if (!"default".equals(profile)) {
+            application.profiles(profile);
+        }
+        directory = Files.createTempDirectory("load");
+        // arguments, not builder properties, those are defaults that application.yml overrides
+        context = application.run(
+            "--server.port=0",
+            // the mmap outbox sink needs a database that survives restarts
+            "--spring.datasource.url=jdbc:h2:file:" + directory.resolve("shopdb").toAbsolutePath(),
+            "--shop.persistence.log.directory=" + directory,
+            "--shop.persistence.stock-store=log",
+            "--shop.persistence.order-store=log",
+            "--shop.outbox.sink=mmap",
+            "--spring.jpa.show-sql=false",
+            "--logging.level.root=WARN");
+        String baseUrl = "http://localhost:" + context.getBean(Environment.class).getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        HttpResponse<String> login = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"testuser\",\"password\":\"testpass\"}"))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+        ok(login);
+        JsonNode body = new ObjectMapper().readTree(login.body());
+        String authorization = "Bearer " + body.get("token").asText();
+
+        ordersPage = HttpRequest.newBuilder(URI.create(baseUrl + "/api/orders/page?limit=20"))
+            .header("Authorization", authorization)
+            .build();
+        productsPage = HttpRequest.newBuilder(URI.create(baseUrl + "/api/products/page?size=20"))
+            .header("Authorization", authorization)
+            .build();
+
+        ProductEntity product = new ProductEntity();
+        product.setName("Load test product");
+        product.setPrice(new BigDecimal("10.00"));
+        product.setStockQuantity(Integer.MAX_VALUE);
+        product = context.getBean(ProductRepository.class).save(product);
+        context.getBean(StockReservationLedger.class).track(product.getId(), product.getStockQuantity());
+        createOrder = HttpRequest.newBuilder(URI.create(baseUrl + "/api/orders"))
+            .header("Authorization", authorization)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(
+                "{\"items\":[{\"productId\":" + product.getId() + ",\"quantity\":1}]}"))
+            .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory.toFile());
+    }
+
+    @Benchmark
+    public int ordersPage() throws IOException, InterruptedException {
+        return ok(client.send(ordersPage, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    @Benchmark
+    public int productsPage() throws IOException, InterruptedException {
+        return ok(client.send(productsPage, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    @Benchmark
+    public int createOrder() throws IOException, InterruptedException {
+        return ok(client.send(createOrder, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    private static int ok(HttpResponse<?> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(response.request().uri() + " answered " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
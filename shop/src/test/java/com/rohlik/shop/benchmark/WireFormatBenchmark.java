@@ -0,0 +1,92 @@
+package com.rohlik.shop.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.rohlik.shop.adapters.in.web.dto.OrderDTO;
+import com.rohlik.shop.adapters.in.web.mapper.OrderItemMapper;
+import com.rohlik.shop.adapters.in.web.mapper.OrderMapper;
+import com.rohlik.shop.application.domain.OrderEntity;
+import com.rohlik.shop.config.JacksonConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A large order list in JSON, CBOR and Smile, all with the {@link JacksonConfig} modules. Payload
+ * sizes, plain and gzipped, are reported next to the scores as the {@link PayloadSize} counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<OrderDTO>> ORDER_LIST = new TypeReference<>() {};
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"1000", "10000"})
+    private int orders;
+
+    private ObjectMapper mapper;
+    private List<OrderDTO> orderList;
+    private byte[] payload;
+    private int gzippedSize;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = switch (format) {
+            case "cbor" -> JacksonConfig.configure(new CBORMapper());
+            case "smile" -> JacksonConfig.configure(new SmileMapper());
+            default -> JacksonConfig.configure(new ObjectMapper());
+        };
+        OrderMapper orderMapper = new OrderMapper(new OrderItemMapper());
+        orderList = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            OrderEntity order = BenchmarkData.order(1 + i % 5);
+            order.setId(i + 1L);
+            orderList.add(orderMapper.toDTO(order));
+        }
+        payload = mapper.writeValueAsBytes(orderList);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(payload);
+        }
+        gzippedSize = gzipped.size();
+    }
+
+    @Benchmark
+    public byte[] serializeOrders(PayloadSize size) throws IOException {
+        size.record(payload.length, gzippedSize);
+        return mapper.writeValueAsBytes(orderList);
+    }
+
+    @Benchmark
+    public List<OrderDTO> deserializeOrders(PayloadSize size) throws IOException {
+        size.record(payload.length, gzippedSize);
+        return mapper.readValue(payload, ORDER_LIST);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        public long bytes;
+        public long gzippedBytes;
+
+        // JMH zeroes the counters before each iteration, so the benchmark methods set them
+        void record(int bytes, int gzippedBytes) {
+            this.bytes = bytes;
+            this.gzippedBytes = gzippedBytes;
+        }
+    }
+}
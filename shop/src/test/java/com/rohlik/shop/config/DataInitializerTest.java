@@ -0,0 +1,76 @@
+package com.rohlik.shop.config;
+
+import com.rohlik.shop.adapters.out.persistence.JpaOrderRepository;
+import com.rohlik.shop.adapters.out.persistence.JpaProductRepository;
+import com.rohlik.shop.adapters.out.persistence.JpaUserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class DataInitializerTest {
+
+    @Autowired
+    private JpaProductRepository productRepository;
+
+    @Autowired
+    private JpaUserRepository userRepository;
+
+    @Autowired
+    private JpaOrderRepository orderRepository;
+
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void run_ShouldInsertDemoDataInBatches() {
+        long batched = runStatements(null);
+
+        // 1 user + 15 products + 3 orders + 8 items
+        assertEquals(27, statistics.getEntityInsertCount());
+        assertEquals(15, productRepository.count());
+        assertEquals(3, orderRepository.count());
+        // lookups and counts, sequences and one insert per table,
+        // with IDENTITY ids and a save per order this used to be a statement per row
+        assertTrue(batched <= 10, "Expected at most 10 statements but was " + batched);
+    }
+
+    @Test
+    void run_WithoutJdbcBatching_ShouldTakeAStatementPerRow() {
+        long unbatched = runStatements(1);
+
+        assertTrue(unbatched >= 27, "Expected a statement per row but was " + unbatched);
+    }
+
+    private long runStatements(Integer jdbcBatchSize) {
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.encode(anyString())).thenReturn("encoded");
+        testEntityManager.getEntityManager().unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+        new DataInitializer(productRepository, userRepository, orderRepository, passwordEncoder).run();
+        testEntityManager.flush();
+        return statistics.getPrepareStatementCount();
+    }
+}
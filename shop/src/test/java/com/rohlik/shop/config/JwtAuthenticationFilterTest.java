@@ -0,0 +1,107 @@
+package com.rohlik.shop.config;
+
+import com.rohlik.shop.service.JwtService;
+import com.rohlik.shop.service.UserStateCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JwtService jwtService = new JwtService(SECRET, 60_000, 100, meterRegistry);
+    private final UserDetailsService userDetailsService = Mockito.mock(UserDetailsService.class);
+    private final UserStateCache userStateCache = new UserStateCache(userDetailsService, Duration.ofMinutes(1), 100);
+    private final UserDetails user = User.withUsername("testuser").password("password").roles("USER").build();
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_WhenStateless_ShouldAuthenticateFromClaimsAndCheckUserStateOnce() throws Exception {
+        when(userDetailsService.loadUserByUsername("testuser")).thenReturn(user);
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService, userDetailsService, userStateCache, true, true);
+        String token = jwtService.generateToken(user);
+
+        Authentication first = authenticate(filter, token);
+        Authentication second = authenticate(filter, token);
+
+        assertEquals("testuser", first.getName());
+        assertEquals(List.copyOf(user.getAuthorities()), List.copyOf(second.getAuthorities()));
+        verify(userDetailsService, times(1)).loadUserByUsername(anyString());
+    }
+
+    @Test
+    void doFilter_ShouldLookUpClaimsOncePerRequest() throws Exception {
+        when(userDetailsService.loadUserByUsername("testuser")).thenReturn(user);
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService, userDetailsService, userStateCache, true, true);
+        String token = jwtService.generateToken(user);
+
+        authenticate(filter, token);
+        authenticate(filter, token);
+
+        assertEquals(1, cacheGets("miss"));
+        assertEquals(1, cacheGets("hit"));
+    }
+
+    @Test
+    void doFilter_WhenUserWasDeleted_ShouldNotAuthenticate() throws Exception {
+        when(userDetailsService.loadUserByUsername("testuser")).thenThrow(new UsernameNotFoundException("testuser"));
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService, userDetailsService, userStateCache, true, true);
+
+        assertNull(authenticate(filter, jwtService.generateToken(user)));
+    }
+
+    @Test
+    void doFilter_WhenTokenHasNoAuthorities_ShouldLoadUser() throws Exception {
+        when(userDetailsService.loadUserByUsername("testuser")).thenReturn(user);
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtService, userDetailsService, userStateCache, true, false);
+        String legacyToken = Jwts.builder()
+            .setSubject("testuser")
+            .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+            .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+            .compact();
+
+        Authentication authentication = authenticate(filter, legacyToken);
+
+        assertSame(user, authentication.getPrincipal());
+    }
+
+    private Authentication authenticate(JwtAuthenticationFilter filter, String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "jwt.validated-tokens").tag("result", result)
+            .functionCounter().count();
+    }
+}
@@ -0,0 +1,79 @@
+package com.rohlik.shop.service;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JwtService jwtService = new JwtService(SECRET, 60_000, 100, meterRegistry);
+    private final UserDetails userDetails = User.withUsername("testuser").password("password").roles("USER").build();
+
+    @Test
+    void isTokenValid_ShouldAcceptGeneratedToken() {
+        String token = jwtService.generateToken(userDetails);
+
+        assertEquals("testuser", jwtService.extractUsername(token));
+        assertTrue(jwtService.isTokenValid(token, userDetails));
+    }
+
+    @Test
+    void isTokenValid_ShouldParseTokenOnlyOnce() {
+        String token = jwtService.generateToken(userDetails);
+
+        jwtService.extractUsername(token);
+        jwtService.isTokenValid(token, userDetails);
+        jwtService.isTokenValid(token, userDetails);
+
+        assertEquals(1, cacheGets("miss"));
+        assertEquals(2, cacheGets("hit"));
+    }
+
+    @Test
+    void extractAuthorities_ShouldReturnAuthoritiesOfTokenOwner() {
+        String token = jwtService.generateToken(userDetails);
+
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_USER")), jwtService.extractAuthorities(token));
+    }
+
+    @Test
+    void isTokenValid_WhenUserDiffers_ShouldReturnFalse() {
+        String token = jwtService.generateToken(userDetails);
+        UserDetails otherUser = User.withUsername("other").password("password").roles("USER").build();
+
+        assertFalse(jwtService.isTokenValid(token, otherUser));
+    }
+
+    @Test
+    void extractUsername_WhenSignatureIsTampered_ShouldThrowException() {
+        String token = jwtService.generateToken(userDetails);
+        jwtService.extractUsername(token);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtService.extractUsername(tampered));
+    }
+
+    @Test
+    void extractUsername_WhenTokenIsExpired_ShouldThrowException() {
+        JwtService expiringService = new JwtService(SECRET, -1_000, 100, new SimpleMeterRegistry());
+        String token = expiringService.generateToken(userDetails);
+
+        assertThrows(ExpiredJwtException.class, () -> expiringService.extractUsername(token));
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "jwt.validated-tokens").tag("result", result)
+            .functionCounter().count();
+    }
+}